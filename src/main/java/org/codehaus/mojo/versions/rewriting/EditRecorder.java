@@ -0,0 +1,35 @@
+package org.codehaus.mojo.versions.rewriting;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Receives the edits made to a {@link ModifiedPomXMLEventReader}, as ranges of the document at the time of the edit.
+ */
+public interface EditRecorder
+{
+    /**
+     * Called after the characters between <code>start</code> and <code>end</code> were replaced.
+     *
+     * @param start       the start offset of the replaced range, inclusive.
+     * @param end         the end offset of the replaced range, exclusive.
+     * @param replacement the new text of the range.
+     */
+    void edit( int start, int end, String replacement );
+}
@@ -0,0 +1,331 @@
+package org.codehaus.mojo.versions.rewriting;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.events.XMLEvent;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The events of one parse of a pom with their character offsets, so that the pom can be read again without parsing
+ * it again.
+ * <p/>
+ * Edits are recorded as shifts of the offsets of the following events. Only edits of plain text inside a single
+ * characters event within the root element can be recorded, as a parser would report the same events for the edited
+ * document. Any other edit invalidates the tape.
+ */
+class EventTape
+{
+
+    /**
+     * Field events
+     */
+    private XMLEvent[] events = new XMLEvent[64];
+
+    /**
+     * Field offsets, in the coordinates of the document when the tape was last settled.
+     */
+    private int[] offsets = new int[64];
+
+    /**
+     * Field size
+     */
+    private int size;
+
+    /**
+     * Field complete
+     */
+    private boolean complete;
+
+    /**
+     * Field depth, the element depth after the last event.
+     */
+    private int depth;
+
+    /**
+     * Field rootStart, the index of the start of the root element.
+     */
+    private int rootStart = -1;
+
+    /**
+     * Field rootEnd, the index of the end of the root element.
+     */
+    private int rootEnd = Integer.MAX_VALUE;
+
+    /**
+     * Field valid
+     */
+    private boolean valid = true;
+
+    /**
+     * Field shifts, the change in length of the text of the event before each index.
+     */
+    private int[] shifts = new int[65];
+
+    /**
+     * Field tree, a Fenwick tree over the shifts for finding the current offset of an event.
+     */
+    private int[] tree = new int[66];
+
+    /**
+     * Field changed, the characters events whose text was edited.
+     */
+    private final BitSet changed = new BitSet();
+
+    /**
+     * Field eventFactory
+     */
+    private XMLEventFactory eventFactory;
+
+    /**
+     * Appends an event read from the parser.
+     *
+     * @param event the event.
+     */
+    void add( XMLEvent event )
+    {
+        if ( size == events.length )
+        {
+            events = Arrays.copyOf( events, size * 2 );
+            offsets = Arrays.copyOf( offsets, size * 2 );
+            shifts = Arrays.copyOf( shifts, size * 2 + 1 );
+            rebuildTree();
+        }
+        events[size] = event;
+        offsets[size] = event.getLocation().getCharacterOffset();
+        if ( event.isStartElement() && depth++ == 0 )
+        {
+            rootStart = size;
+        }
+        else if ( event.isEndElement() && --depth == 0 )
+        {
+            rootEnd = size;
+        }
+        size++;
+        if ( event.isEndDocument() )
+        {
+            complete = true;
+        }
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    XMLEvent get( int index )
+    {
+        return events[index];
+    }
+
+    int offset( int index )
+    {
+        return offsets[index];
+    }
+
+    /**
+     * Returns <code>true</code> if the tape reaches the end of the document.
+     *
+     * @return <code>true</code> if the tape reaches the end of the document.
+     */
+    boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Returns <code>true</code> if all edits so far could be recorded.
+     *
+     * @return <code>true</code> if all edits so far could be recorded.
+     */
+    boolean isValid()
+    {
+        return valid;
+    }
+
+    /**
+     * Records an edit, or invalidates the tape if the edit changes the events.
+     *
+     * @param pom         the document before the edit.
+     * @param start       the start of the replaced range in the document.
+     * @param end         the end of the replaced range in the document.
+     * @param replacement the replacement.
+     * @param nextOffset  the offset of the event after the last one on the tape, or <code>-1</code> if unknown.
+     */
+    void edit( CharSequence pom, int start, int end, String replacement, int nextOffset )
+    {
+        if ( !valid )
+        {
+            return;
+        }
+        int event = find( start );
+        int eventEnd = event + 1 < size ? current( event + 1 ) : nextOffset < 0 ? -1 : nextOffset + sum( size );
+        if ( rootStart < 0 || event <= rootStart || event >= rootEnd || !events[event].isCharacters()
+            || end > eventEnd
+            || !isPlainText( replacement, 0, replacement.length() ) || !isPlainText( pom, current( event ), eventEnd ) )
+        {
+            valid = false;
+            return;
+        }
+        int delta = replacement.length() - ( end - start );
+        if ( eventEnd - current( event ) + delta == 0 )
+        {
+            // a parser would not report the empty text at all
+            valid = false;
+            return;
+        }
+        shifts[event + 1] += delta;
+        for ( int i = event + 2; i < tree.length; i += i & -i )
+        {
+            tree[i] += delta;
+        }
+        changed.set( event );
+    }
+
+    /**
+     * Applies the recorded edits to the offsets and events, so that they match the document.
+     *
+     * @param pom the edited document.
+     */
+    void settle( CharSequence pom )
+    {
+        int shift = 0;
+        for ( int i = 0; i < size; i++ )
+        {
+            shift += shifts[i];
+            offsets[i] += shift;
+        }
+        for ( int i = changed.nextSetBit( 0 ); i >= 0; i = changed.nextSetBit( i + 1 ) )
+        {
+            if ( eventFactory == null )
+            {
+                eventFactory = XMLEventFactory.newInstance();
+            }
+            events[i] = eventFactory.createCharacters( normalize( pom, offsets[i], offsets[i + 1] ) );
+        }
+        changed.clear();
+        Arrays.fill( shifts, 0 );
+        Arrays.fill( tree, 0 );
+    }
+
+    /**
+     * Returns the last event starting at or before the offset in the current document.
+     */
+    private int find( int offset )
+    {
+        int low = 0;
+        int high = size - 1;
+        int found = -1;
+        while ( low <= high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if ( current( mid ) <= offset )
+            {
+                found = mid;
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the offset of an event in the current document.
+     */
+    private int current( int index )
+    {
+        return offsets[index] + sum( index );
+    }
+
+    /**
+     * Returns the sum of the shifts up to and including an index.
+     */
+    private int sum( int index )
+    {
+        int sum = 0;
+        for ( int i = Math.min( index + 1, tree.length - 1 ); i > 0; i -= i & -i )
+        {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void rebuildTree()
+    {
+        tree = new int[shifts.length + 1];
+        for ( int i = 0; i < shifts.length; i++ )
+        {
+            if ( shifts[i] != 0 )
+            {
+                for ( int j = i + 1; j < tree.length; j += j & -j )
+                {
+                    tree[j] += shifts[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the text is character data without references or markup and without characters
+     * that could form markup or be illegal when joined with other text.
+     */
+    private static boolean isPlainText( CharSequence text, int start, int end )
+    {
+        for ( int i = start; i < end; i++ )
+        {
+            char c = text.charAt( i );
+            if ( c == '<' || c == '&' || c == '>' || c == ']' || c < 0x20 && c != '\t' && c != '\n' && c != '\r'
+                || Character.isSurrogate( c ) || c >= 0xfffe )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the text as a parser reports it, with line ends normalized.
+     */
+    private static String normalize( CharSequence pom, int start, int end )
+    {
+        StringBuilder text = new StringBuilder( end - start );
+        for ( int i = start; i < end; i++ )
+        {
+            char c = pom.charAt( i );
+            if ( c == '\r' )
+            {
+                text.append( '\n' );
+                if ( i + 1 < end && pom.charAt( i + 1 ) == '\n' )
+                {
+                    i++;
+                }
+            }
+            else
+            {
+                text.append( c );
+            }
+        }
+        return text.toString();
+    }
+}
@@ -27,9 +27,10 @@ import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.EntityDeclaration;
+import javax.xml.stream.events.EntityReference;
 import javax.xml.stream.events.XMLEvent;
 import java.io.IOException;
-import java.io.StringReader;
 
 /**
  * Represents the modified pom file. Note: implementations of the StAX API (JSR-173) are not good round-trip rewriting
@@ -50,15 +51,20 @@ public class ModifiedPomXMLEventReader
     private static final int MAX_MARKS = 3;
 
     /**
-     * Field pom
+     * Field pom, the text being edited. A piece table, so an edit does not move the rest of the text.
      */
-    private final StringBuilder pom;
+    private final PomBuffer pom;
 
     /**
      * Field modified
      */
     private boolean modified = false;
 
+    /**
+     * Field rewinds, the number of rewinds after the first parse.
+     */
+    private int rewinds = 0;
+
     /**
      * Field factory
      */
@@ -119,32 +125,75 @@ public class ModifiedPomXMLEventReader
      */
     private XMLEventReader backing;
 
+    /**
+     * Field recorder
+     */
+    private EditRecorder recorder;
+
+    /**
+     * Field tape, the events of the last parse.
+     */
+    private EventTape tape;
+
+    /**
+     * Field position, the index of the next event on the tape when replaying.
+     */
+    private int position;
+
 // --------------------------- CONSTRUCTORS ---------------------------
 
     /**
      * Constructor ModifiedPomXMLEventReader creates a new ModifiedPomXMLEventReader instance.
      *
-     * @param pom     of type StringBuilder
+     * @param pom     of type StringBuilder, copied; the edits are read back with {@link #asStringBuilder()}
      * @param factory of type XMLInputFactory
      * @throws XMLStreamException when
      */
     public ModifiedPomXMLEventReader( StringBuilder pom, XMLInputFactory factory )
         throws XMLStreamException
     {
-        this.pom = pom;
+        this.pom = new PomBuffer( pom );
         this.factory = factory;
         rewind();
+        rewinds = 0;
     }
 
     /**
-     * Rewind to the start so we can run through again.
+     * Rewind to the start so we can run through again. The events are replayed from the tape of the last parse if
+     * the pom was only edited inside text since then, and parsed again otherwise.
      *
      * @throws XMLStreamException when things go wrong.
      */
     public void rewind()
         throws XMLStreamException
     {
-        backing = factory.createXMLEventReader( new StringReader( pom.toString() ) );
+        rewinds++;
+        if ( backing != null && tape != null && tape.isValid() && !tape.isComplete() )
+        {
+            // finish the tape from the parse of the unedited document
+            try
+            {
+                while ( backing.hasNext() )
+                {
+                    tape.add( backing.nextEvent() );
+                }
+            }
+            catch ( XMLStreamException e )
+            {
+                tape = null;
+            }
+        }
+        if ( tape != null && tape.isValid() && tape.isComplete() )
+        {
+            tape.settle( pom );
+            backing = null;
+            position = 0;
+        }
+        else
+        {
+            backing = factory.createXMLEventReader( pom.reader() );
+            tape = new EventTape();
+        }
         nextEnd = 0;
         nextDelta = 0;
         for ( int i = 0; i < MAX_MARKS; i++ )
@@ -171,6 +220,26 @@ public class ModifiedPomXMLEventReader
         return modified;
     }
 
+    /**
+     * Getter for property 'rewindCount'.
+     *
+     * @return the number of times the pom was rewound after it was first parsed.
+     */
+    public int getRewindCount()
+    {
+        return rewinds;
+    }
+
+    /**
+     * Sets the recorder notified of every edit made to the pom.
+     *
+     * @param recorder the recorder, or <code>null</code> for none.
+     */
+    public void setEditRecorder( EditRecorder recorder )
+    {
+        this.recorder = recorder;
+    }
+
 // ------------------------ INTERFACE METHODS ------------------------
 
 // --------------------- Interface Iterator ---------------------
@@ -226,7 +295,11 @@ public class ModifiedPomXMLEventReader
     public XMLEvent peek()
         throws XMLStreamException
     {
-        return backing.peek();
+        if ( backing != null )
+        {
+            return backing.peek();
+        }
+        return position < tape.size() ? tape.get( position ) : null;
     }
 
     /**
@@ -235,7 +308,40 @@ public class ModifiedPomXMLEventReader
     public String getElementText()
         throws XMLStreamException
     {
-        return backing.getElementText();
+        StringBuilder text = new StringBuilder();
+        while ( true )
+        {
+            if ( !rawHasNext() )
+            {
+                throw new XMLStreamException( "Unexpected end of document when reading element text content" );
+            }
+            XMLEvent e = pull();
+            if ( e.isEndElement() )
+            {
+                return text.toString();
+            }
+            if ( e.isCharacters() )
+            {
+                text.append( e.asCharacters().getData() );
+            }
+            else if ( e.isEntityReference() )
+            {
+                EntityDeclaration declaration = ( (EntityReference) e ).getDeclaration();
+                if ( declaration != null && declaration.getReplacementText() != null )
+                {
+                    text.append( declaration.getReplacementText() );
+                }
+            }
+            else if ( e.isStartElement() )
+            {
+                throw new XMLStreamException( "Expected text only element but START_ELEMENT was encountered",
+                                              e.getLocation() );
+            }
+            else if ( e.isEndDocument() )
+            {
+                throw new XMLStreamException( "Unexpected end of document when reading element text content" );
+            }
+        }
     }
 
     /**
@@ -264,7 +370,7 @@ public class ModifiedPomXMLEventReader
      */
     public Object getProperty( String name )
     {
-        return backing.getProperty( name );
+        return backing != null ? backing.getProperty( name ) : factory.getProperty( name );
     }
 
     /**
@@ -273,9 +379,14 @@ public class ModifiedPomXMLEventReader
     public void close()
         throws XMLStreamException
     {
-        backing.close();
+        if ( backing != null )
+        {
+            backing.close();
+        }
         next = null;
         backing = null;
+        tape = null;
+        position = 0;
     }
 
 // -------------------------- OTHER METHODS --------------------------
@@ -290,6 +401,16 @@ public class ModifiedPomXMLEventReader
         return new StringBuilder( pom.toString() );
     }
 
+    /**
+     * Returns a read only view of the edited pom, which follows later edits.
+     *
+     * @return the edited pom.
+     */
+    public CharSequence asCharSequence()
+    {
+        return pom;
+    }
+
     /**
      * Clears the mark.
      *
@@ -339,18 +460,18 @@ public class ModifiedPomXMLEventReader
             // fast path
             return true;
         }
-        if ( !backing.hasNext() )
+        if ( !rawHasNext() )
         {
             // fast path
             return false;
         }
         try
         {
-            next = backing.nextEvent();
+            next = pull();
             nextStart = nextEnd;
-            if ( backing.hasNext() )
+            if ( rawHasNext() )
             {
-                nextEnd = backing.peek().getLocation().getCharacterOffset();
+                nextEnd = rawPeekOffset();
             }
 
             if ( nextEnd != -1 )
@@ -379,6 +500,98 @@ public class ModifiedPomXMLEventReader
         }
     }
 
+    /**
+     * Returns <code>true</code> if there are more events from the parser or the tape.
+     *
+     * @return <code>true</code> if there are more events from the parser or the tape.
+     */
+    private boolean rawHasNext()
+    {
+        return backing != null ? backing.hasNext() : position < tape.size();
+    }
+
+    /**
+     * Takes the next event from the parser, adding it to the tape, or from the tape.
+     *
+     * @return the event.
+     * @throws XMLStreamException when the parser fails.
+     */
+    private XMLEvent pull()
+        throws XMLStreamException
+    {
+        if ( backing == null )
+        {
+            return tape.get( position++ );
+        }
+        try
+        {
+            XMLEvent event = backing.nextEvent();
+            if ( tape != null && tape.isValid() )
+            {
+                tape.add( event );
+            }
+            return event;
+        }
+        catch ( XMLStreamException e )
+        {
+            // the parser may go on after an error, but a new parse would stop there
+            tape = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the character offset of the event after the last one taken.
+     *
+     * @return the character offset of the event after the last one taken.
+     * @throws XMLStreamException when the parser fails.
+     */
+    private int rawPeekOffset()
+        throws XMLStreamException
+    {
+        if ( backing == null )
+        {
+            return tape.offset( position );
+        }
+        try
+        {
+            return backing.peek().getLocation().getCharacterOffset();
+        }
+        catch ( XMLStreamException e )
+        {
+            tape = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Records an edit about to be made on the tape.
+     *
+     * @param start       the start of the replaced range.
+     * @param end         the end of the replaced range.
+     * @param replacement the replacement.
+     */
+    private void tapeEdit( int start, int end, String replacement )
+    {
+        if ( tape == null || !tape.isValid() )
+        {
+            return;
+        }
+        int nextOffset = -1;
+        try
+        {
+            if ( backing != null && backing.hasNext() )
+            {
+                nextOffset = backing.peek().getLocation().getCharacterOffset();
+            }
+        }
+        catch ( XMLStreamException e )
+        {
+            // the tape cannot be completed anyway
+        }
+        tape.edit( pom, start, end, replacement, nextOffset );
+    }
+
     /**
      * Getter for property 'verbatim'.
      *
@@ -454,8 +667,13 @@ public class ModifiedPomXMLEventReader
         {
             return;
         }
+        tapeEdit( start, end, replacement );
         pom.replace( start, end, replacement );
-        int delta = replacement.length() - lastEnd - lastStart;
+        if ( recorder != null )
+        {
+            recorder.edit( start, end, replacement );
+        }
+        int delta = replacement.length() - ( lastEnd - lastStart );
         nextDelta += delta;
         for ( int i = 0; i < MAX_MARKS; i++ )
         {
@@ -510,7 +728,12 @@ public class ModifiedPomXMLEventReader
         {
             return;
         }
+        tapeEdit( start, end, replacement );
         pom.replace( start, end, replacement );
+        if ( recorder != null )
+        {
+            recorder.edit( start, end, replacement );
+        }
         int delta = replacement.length() - ( end - start );
         nextDelta += delta;
 
@@ -555,8 +778,13 @@ public class ModifiedPomXMLEventReader
         {
             return;
         }
+        tapeEdit( start, end, replacement );
         pom.replace( start, end, replacement );
-        int delta = replacement.length() - markEnd[index] - markStart[index];
+        if ( recorder != null )
+        {
+            recorder.edit( start, end, replacement );
+        }
+        int delta = replacement.length() - ( markEnd[index] - markStart[index] );
         nextDelta += delta;
         if ( lastStart == markStart[index] && lastEnd == markEnd[index] )
         {
@@ -589,7 +817,7 @@ public class ModifiedPomXMLEventReader
         throws IOException, XmlPullParserException
     {
         MavenXpp3Reader reader = new MavenXpp3Reader();
-        return reader.read( new StringReader( pom.toString() ) );
+        return reader.read( pom.reader() );
     }
 
 }
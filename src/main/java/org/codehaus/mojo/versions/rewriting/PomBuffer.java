@@ -0,0 +1,420 @@
+package org.codehaus.mojo.versions.rewriting;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Reader;
+
+/**
+ * The text of a pom being edited, as a piece table.
+ * <p/>
+ * The text is a sequence of pieces, each a range of either the original text or of an append-only buffer holding
+ * all inserted text. The pieces are kept in a treap ordered by position, so replacing a range splits and joins pieces
+ * in logarithmic time instead of moving the rest of the text.
+ */
+class PomBuffer
+    implements CharSequence
+{
+
+    /**
+     * Field original
+     */
+    private final String original;
+
+    /**
+     * Field added
+     */
+    private final StringBuilder added = new StringBuilder();
+
+    /**
+     * Field root
+     */
+    private Piece root;
+
+    /**
+     * Field seed, of the priorities of new pieces.
+     */
+    private int seed = 0x2545f491;
+
+    /**
+     * Field cached, the piece of the last access, as the text is mostly read in sequence.
+     */
+    private Piece cached;
+
+    /**
+     * Field cachedStart, the position of the cached piece.
+     */
+    private int cachedStart;
+
+    /**
+     * Creates a buffer holding a copy of the text.
+     *
+     * @param text the text.
+     */
+    PomBuffer( CharSequence text )
+    {
+        original = text.toString();
+        if ( original.length() > 0 )
+        {
+            root = new Piece( false, 0, original.length(), nextPriority() );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int length()
+    {
+        return size( root );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public char charAt( int index )
+    {
+        if ( index < 0 || index >= length() )
+        {
+            throw new StringIndexOutOfBoundsException( index );
+        }
+        if ( cached == null || index < cachedStart || index >= cachedStart + cached.length )
+        {
+            locate( index );
+        }
+        int i = cached.start + index - cachedStart;
+        return cached.added ? added.charAt( i ) : original.charAt( i );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CharSequence subSequence( int start, int end )
+    {
+        return substring( start, end );
+    }
+
+    /**
+     * Returns a copy of a range of the text.
+     *
+     * @param start the start, inclusive.
+     * @param end   the end, exclusive.
+     * @return the text in the range.
+     */
+    public String substring( int start, int end )
+    {
+        checkRange( start, end );
+        char[] text = new char[end - start];
+        getChars( start, end, text, 0 );
+        return new String( text );
+    }
+
+    /**
+     * Replaces a range of the text.
+     *
+     * @param start       the start, inclusive.
+     * @param end         the end, exclusive.
+     * @param replacement the new text of the range.
+     */
+    public void replace( int start, int end, String replacement )
+    {
+        checkRange( start, end );
+        Piece[] head = split( root, start );
+        Piece[] tail = split( head[1], end - start );
+        Piece middle = null;
+        if ( replacement.length() > 0 )
+        {
+            middle = new Piece( true, added.length(), replacement.length(), nextPriority() );
+            added.append( replacement );
+        }
+        root = merge( merge( head[0], middle ), tail[1] );
+        cached = null;
+    }
+
+    /**
+     * Returns a reader of the current text, for parsing it without copying it first. The reader keeps reading the
+     * text as it was when the reader was created, as edits only ever append to the buffers behind the pieces.
+     *
+     * @return the reader.
+     */
+    public Reader reader()
+    {
+        final int[] ranges = new int[3 * count( root )];
+        ranges( root, ranges, 0 );
+        return new Reader()
+        {
+            private int range;
+
+            private int offset;
+
+            @Override
+            public int read( char[] buffer, int off, int len )
+            {
+                if ( len == 0 )
+                {
+                    return 0;
+                }
+                if ( range == ranges.length )
+                {
+                    return -1;
+                }
+                int start = ranges[range + 1] + offset;
+                int n = Math.min( len, ranges[range + 2] - offset );
+                if ( ranges[range] == 1 )
+                {
+                    added.getChars( start, start + n, buffer, off );
+                }
+                else
+                {
+                    original.getChars( start, start + n, buffer, off );
+                }
+                offset += n;
+                if ( offset == ranges[range + 2] )
+                {
+                    range += 3;
+                    offset = 0;
+                }
+                return n;
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString()
+    {
+        char[] text = new char[length()];
+        copy( root, text, 0 );
+        return new String( text );
+    }
+
+    private void getChars( int start, int end, char[] destination, int offset )
+    {
+        int position = start;
+        while ( position < end )
+        {
+            if ( cached == null || position < cachedStart || position >= cachedStart + cached.length )
+            {
+                locate( position );
+            }
+            int from = cached.start + position - cachedStart;
+            int n = Math.min( end - position, cachedStart + cached.length - position );
+            if ( cached.added )
+            {
+                added.getChars( from, from + n, destination, offset + position - start );
+            }
+            else
+            {
+                original.getChars( from, from + n, destination, offset + position - start );
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Copies the text of a subtree, returning the offset after it.
+     */
+    private int copy( Piece piece, char[] destination, int offset )
+    {
+        if ( piece == null )
+        {
+            return offset;
+        }
+        offset = copy( piece.left, destination, offset );
+        if ( piece.added )
+        {
+            added.getChars( piece.start, piece.start + piece.length, destination, offset );
+        }
+        else
+        {
+            original.getChars( piece.start, piece.start + piece.length, destination, offset );
+        }
+        return copy( piece.right, destination, offset + piece.length );
+    }
+
+    private static int count( Piece piece )
+    {
+        return piece == null ? 0 : count( piece.left ) + 1 + count( piece.right );
+    }
+
+    /**
+     * Stores the source, start and length of the pieces of a subtree in order, returning the index after them.
+     */
+    private static int ranges( Piece piece, int[] ranges, int index )
+    {
+        if ( piece == null )
+        {
+            return index;
+        }
+        index = ranges( piece.left, ranges, index );
+        ranges[index] = piece.added ? 1 : 0;
+        ranges[index + 1] = piece.start;
+        ranges[index + 2] = piece.length;
+        return ranges( piece.right, ranges, index + 3 );
+    }
+
+    /**
+     * Finds the piece holding a position and caches it.
+     */
+    private void locate( int index )
+    {
+        Piece piece = root;
+        int base = 0;
+        while ( true )
+        {
+            int left = size( piece.left );
+            if ( index < base + left )
+            {
+                piece = piece.left;
+            }
+            else if ( index < base + left + piece.length )
+            {
+                cached = piece;
+                cachedStart = base + left;
+                return;
+            }
+            else
+            {
+                base += left + piece.length;
+                piece = piece.right;
+            }
+        }
+    }
+
+    /**
+     * Splits a subtree into the pieces of its first <code>count</code> characters and the rest.
+     */
+    private Piece[] split( Piece piece, int count )
+    {
+        if ( piece == null )
+        {
+            return new Piece[2];
+        }
+        int left = size( piece.left );
+        if ( count <= left )
+        {
+            Piece[] parts = split( piece.left, count );
+            piece.left = parts[1];
+            piece.update();
+            return new Piece[]{ parts[0], piece };
+        }
+        if ( count >= left + piece.length )
+        {
+            Piece[] parts = split( piece.right, count - left - piece.length );
+            piece.right = parts[0];
+            piece.update();
+            return new Piece[]{ piece, parts[1] };
+        }
+        // the cut is inside the piece; the tail keeps its priority so both halves stay valid treaps
+        int cut = count - left;
+        Piece tail = new Piece( piece.added, piece.start + cut, piece.length - cut, piece.priority );
+        tail.right = piece.right;
+        tail.update();
+        piece.length = cut;
+        piece.right = null;
+        piece.update();
+        return new Piece[]{ piece, tail };
+    }
+
+    private static Piece merge( Piece a, Piece b )
+    {
+        if ( a == null )
+        {
+            return b;
+        }
+        if ( b == null )
+        {
+            return a;
+        }
+        if ( a.priority >= b.priority )
+        {
+            a.right = merge( a.right, b );
+            a.update();
+            return a;
+        }
+        b.left = merge( a, b.left );
+        b.update();
+        return b;
+    }
+
+    private static int size( Piece piece )
+    {
+        return piece == null ? 0 : piece.size;
+    }
+
+    private int nextPriority()
+    {
+        // xorshift
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private void checkRange( int start, int end )
+    {
+        if ( start < 0 || end > length() || start > end )
+        {
+            throw new StringIndexOutOfBoundsException( "start " + start + ", end " + end + ", length " + length() );
+        }
+    }
+
+    /**
+     * A range of the original or the added text.
+     */
+    private static class Piece
+    {
+
+        final boolean added;
+
+        final int start;
+
+        int length;
+
+        final int priority;
+
+        Piece left;
+
+        Piece right;
+
+        /**
+         * The number of characters in the subtree of this piece.
+         */
+        int size;
+
+        Piece( boolean added, int start, int length, int priority )
+        {
+            this.added = added;
+            this.start = start;
+            this.length = length;
+            this.priority = priority;
+            this.size = length;
+        }
+
+        void update()
+        {
+            size = size( left ) + length + size( right );
+        }
+    }
+}
@@ -0,0 +1,810 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.versions.api.PomHelper;
+
+/**
+ * Common parameters and search logic of the Vaadin Directory goals.
+ */
+public abstract class AbstractDirectoryMojo extends AbstractMojo {
+
+    private static final String DEFAULT_VAADIN_VERSION = "7";
+
+    /**
+     * Search string, or a comma separated list of them.
+     */
+    @Parameter(property = "addon")
+    protected String searchAddon;
+
+    @Parameter(property = "full", defaultValue = "false", readonly = true)
+    protected boolean fullSearch;
+
+    @Parameter(property = "project", defaultValue = "${project}", required = true, readonly = true)
+    protected MavenProject project;
+
+    /**
+     * Directory where Directory search results are cached.
+     */
+    @Parameter(property = "directory.cacheDir", defaultValue = "${user.home}/.m2/directory-cache")
+    protected File cacheDirectory;
+
+    /**
+     * Minutes a cached search result is used without asking the Directory.
+     * Zero always revalidates.
+     */
+    @Parameter(property = "directory.cacheTtl", defaultValue = "1440")
+    protected long cacheTtl;
+
+    /**
+     * Answer searches from the local catalog index only, without network
+     * access. A catalog snapshot must have been downloaded earlier.
+     */
+    @Parameter(property = "directory.offline", defaultValue = "${settings.offline}")
+    protected boolean offline;
+
+    /**
+     * Answer searches from a local index of the whole add-on catalog,
+     * downloading the catalog snapshot when it has expired.
+     */
+    @Parameter(property = "directory.localIndex", defaultValue = "false")
+    protected boolean localIndex;
+
+    /**
+     * When the local catalog snapshot has expired, keep searching it and
+     * refresh it in the background instead of waiting for the refresh
+     * before searching. The goal waits for the refresh before it ends.
+     */
+    @Parameter(property = "directory.backgroundRefresh", defaultValue = "true")
+    protected boolean backgroundRefresh;
+
+    /**
+     * Only show add-ons under this license, for example Apache-2.0.
+     * Case, punctuation and the words license and version are ignored, and
+     * the rest must match exactly. End with * to match all licenses starting
+     * with the name, for example apache*.
+     */
+    @Parameter(property = "license")
+    protected String license;
+
+    /**
+     * Only show add-ons rated at least this high, from 0 to 5.
+     */
+    @Parameter(property = "minRating", defaultValue = "0")
+    protected double minRating;
+
+    /**
+     * Match add-on names typo tolerantly against the local catalog index.
+     */
+    @Parameter(property = "directory.fuzzy", defaultValue = "false")
+    protected boolean fuzzy;
+
+    /**
+     * Maximum number of typo tolerant matches.
+     */
+    @Parameter(property = "directory.fuzzyResults", defaultValue = "10")
+    protected int fuzzyResults;
+
+    /**
+     * Maximum number of searches run concurrently when several add-ons are
+     * given.
+     */
+    @Parameter(property = "directory.threads", defaultValue = "4")
+    protected int threads;
+
+    /**
+     * Maximum number of hits shown per search, zero for all.
+     */
+    @Parameter(property = "directory.limit", defaultValue = "0")
+    protected int limit;
+
+    /**
+     * Number of best hits to skip per search.
+     */
+    @Parameter(property = "directory.offset", defaultValue = "0")
+    protected int offset;
+
+    /**
+     * Weight of the add-on rating in ranking, between 0 and 1. The rest of
+     * the weight goes to search relevance.
+     */
+    @Parameter(property = "directory.ratingWeight", defaultValue = "0.3")
+    protected double ratingWeight;
+
+    /**
+     * Run the search once at the execution root of a reactor build and
+     * report which modules already depend on each hit.
+     */
+    @Parameter(property = "directory.aggregate", defaultValue = "false")
+    protected boolean aggregate;
+
+    /**
+     * Vaadin version to find add-ons for, for example 7 or 8.1.2. By default
+     * the version is taken from the vaadin.version property or the Vaadin
+     * dependencies of the project.
+     */
+    @Parameter(property = "directory.vaadinVersion")
+    protected String vaadinVersion;
+
+    /**
+     * Milliseconds to wait for a connection to the Directory.
+     */
+    @Parameter(property = "directory.connectTimeout", defaultValue = "5000")
+    protected int connectTimeout;
+
+    /**
+     * Milliseconds to wait for a Directory response.
+     */
+    @Parameter(property = "directory.readTimeout", defaultValue = "30000")
+    protected int readTimeout;
+
+    /**
+     * How many times a failed Directory search is retried.
+     */
+    @Parameter(property = "directory.retries", defaultValue = "2")
+    protected int retries;
+
+    /**
+     * Send a duplicate Directory request when a search is slower than this
+     * percentile of recent searches, for example 0.95. Zero disables it.
+     * The slower request is abandoned but not stopped, so every hedge is an
+     * extra request to the Directory.
+     */
+    @Parameter(property = "directory.hedgePercentile", defaultValue = "0")
+    protected double hedgePercentile;
+
+    /**
+     * Base URL of a Directory mirror, such as the stub server of the
+     * benchmark goal, to use instead of the Directory API.
+     */
+    @Parameter(property = "directory.url")
+    protected String directoryUrl;
+
+    /**
+     * Log the time spent searching, reading, scanning and writing the pom on
+     * info level. The timings are always logged on debug level.
+     */
+    @Parameter(property = "directory.timings", defaultValue = "false")
+    protected boolean logTimings;
+
+    /**
+     * Also write the timings as JSON to this file, for example
+     * target/directory-timings.json.
+     */
+    @Parameter(property = "directory.timingsFile")
+    protected File timingsFile;
+
+    protected final Timings timings = new Timings();
+
+    /**
+     * Show and add the newest released version of each add-on found in the
+     * project repositories, instead of the version the Directory reports.
+     * The version stays within the range the pom declares for the add-on,
+     * or within the major version reported by the Directory.
+     */
+    @Parameter(property = "directory.resolveVersions", defaultValue = "false")
+    protected boolean resolveVersions;
+
+    /**
+     * Print the changes the add goal would make to pom.xml as a unified diff
+     * instead of writing them.
+     */
+    @Parameter(property = "directory.dryRun", defaultValue = "false")
+    protected boolean dryRun;
+
+    /**
+     * Add add-ons to the dependency management of the execution root with a
+     * version property, and as dependencies without version to the modules.
+     */
+    @Parameter(property = "directory.managed", defaultValue = "false")
+    protected boolean managed;
+
+    /**
+     * Comma separated paths of the modules the managed add-ons are added to.
+     * By default they are added to all modules that are not pom projects.
+     */
+    @Parameter(property = "directory.modules")
+    protected String modules;
+
+    @Component
+    protected ArtifactFactory artifactFactory;
+
+    @Component
+    protected ArtifactMetadataSource artifactMetadataSource;
+
+    @Parameter(defaultValue = "${localRepository}", readonly = true)
+    protected ArtifactRepository localRepository;
+
+    @Parameter(defaultValue = "${project.remoteArtifactRepositories}", readonly = true)
+    protected List<ArtifactRepository> remoteRepositories;
+
+    protected DirectoryClient getDirectoryClient() {
+        DirectoryClient client = new DirectoryClient(connectTimeout, readTimeout, retries, hedgePercentile);
+        client.setDirectoryUrl(directoryUrl);
+        return client;
+    }
+
+    protected CatalogCache getCatalogCache() {
+        CatalogCache cache = new CatalogCache(cacheDirectory, cacheTtl, getDirectoryClient());
+        cache.setTimings(timings);
+        return cache;
+    }
+
+    protected AddonSearch getAddonSearch() {
+        return getAddonSearch(getCatalogCache());
+    }
+
+    protected FacetFilter getFacetFilter() {
+        return new FacetFilter(license, minRating);
+    }
+
+    protected AddonSearch getAddonSearch(final CatalogCache cache) {
+        final FacetFilter filter = getFacetFilter();
+        if (fuzzy || offline || localIndex) {
+            int results = fuzzy ? (limit > 0 ? Math.max(0, offset) + limit : fuzzyResults) : 0;
+            IndexedSearch search = new IndexedSearch(cache, !offline, results);
+            search.setBackgroundRefresh(backgroundRefresh);
+            search.setFilter(filter);
+            return search;
+        }
+        if (filter.isEmpty()) {
+            return cache;
+        }
+        return new AddonSearch() {
+            @Override
+            public List<AddonEntry> search(String version, String query, boolean fullSearch) throws IOException {
+                return filter.filter(cache.search(version, query, fullSearch));
+            }
+        };
+    }
+
+    /**
+     * The Vaadin major version searches are made for. Each major version has
+     * its own shard of cached catalog data.
+     *
+     * @return
+     */
+    protected String getVaadinMajorVersion() {
+        String version = vaadinVersion;
+        if (version == null || version.trim().isEmpty()) {
+            Model pom = project.getOriginalModel() != null ? project.getOriginalModel() : project.getModel();
+            version = PomUtils.findVaadinVersion(pom);
+        }
+        String major = PomUtils.majorVersion(version);
+        if (major == null) {
+            getLog().debug("Vaadin version not found, searching add-ons for Vaadin " + DEFAULT_VAADIN_VERSION);
+            return DEFAULT_VAADIN_VERSION;
+        }
+        return major;
+    }
+
+    protected VersionResolver getVersionResolver() {
+        return new VersionResolver(artifactFactory, artifactMetadataSource, localRepository, remoteRepositories);
+    }
+
+    protected AddonRanking getRanking() {
+        double w = Math.max(0, Math.min(1, ratingWeight));
+        return new AddonRanking(1 - w, w);
+    }
+
+    /**
+     * Search the Directory and optionally add the hits to the project pom.
+     *
+     * Searches run concurrently and the ranked hits of each search are
+     * printed as soon as that search and all searches before it are done.
+     * When versions are resolved, the hits of all searches are resolved
+     * concurrently and printed once their versions are known.
+     *
+     * @param add Add the found add-ons to pom.xml.
+     * @throws MojoExecutionException if a search failed.
+     */
+    protected void directorySearch(boolean add) throws MojoExecutionException {
+        if ((aggregate || (add && managed)) && !project.isExecutionRoot()) {
+            getLog().info("Skipping, the aggregated search runs once at the execution root.");
+            return;
+        }
+        List<String> queries = splitQueries(searchAddon);
+        String version = getVaadinMajorVersion();
+        AddonSearch search = getAddonSearch();
+        AddonRanking ranking = getRanking();
+        Model model = project.getModel();
+        DependencyIndex dependencies = new DependencyIndex(model);
+        Map<String, DependencyIndex> modules = aggregate ? getReactorDependencies() : null;
+        Map<String, AddonEntry> toAdd = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, queries.size())));
+        VersionResolver resolver = resolveVersions ? getVersionResolver() : null;
+        ExecutorService resolverExecutor = resolveVersions ? Executors.newFixedThreadPool(Math.max(1, threads)) : null;
+        try {
+            Map<String, Future<List<AddonEntry>>> results = searchAll(executor, search, version, queries, fullSearch,
+                    timings);
+            Map<String, List<AddonEntry>> ranked = new LinkedHashMap<>();
+            Map<String, List<Future<AddonEntry>>> resolving = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<List<AddonEntry>>> r : results.entrySet()) {
+                List<AddonEntry> found = get(r.getKey(), r.getValue());
+                long start = timings.start();
+                List<AddonEntry> hits = ranking.top(found, offset, limit);
+                timings.stop(Timings.RANK, start);
+                if (resolver == null) {
+                    printHits(r.getKey(), results.size() > 1, hits, dependencies, modules, add, toAdd);
+                } else {
+                    ranked.put(r.getKey(), hits);
+                    resolving.put(r.getKey(), resolveAll(resolverExecutor, resolver, dependencies, hits));
+                }
+            }
+            for (Map.Entry<String, List<AddonEntry>> r : ranked.entrySet()) {
+                long start = timings.start();
+                List<AddonEntry> hits = getResolved(r.getValue(), resolving.get(r.getKey()));
+                timings.stop(Timings.RESOLVE, start);
+                printHits(r.getKey(), results.size() > 1, hits, dependencies, modules, add, toAdd);
+            }
+        } finally {
+            executor.shutdownNow();
+            if (resolverExecutor != null) {
+                resolverExecutor.shutdownNow();
+            }
+            awaitBackgroundRefresh();
+        }
+        if (!toAdd.isEmpty() && managed) {
+            addManaged(toAdd.values());
+        } else if (!toAdd.isEmpty()) {
+            List<Dependency> deps = new ArrayList<>();
+            for (AddonEntry a : toAdd.values()) {
+                // a version would override the managed one
+                boolean isManaged = dependencies.findManagedDependency(a.getGroupId(), a.getArtifactId()) != null;
+                deps.add(dependency(a, isManaged ? null : a.getVersion()));
+            }
+            if (dryRun) {
+                String diff = PomUtils.previewDependencies(model, deps, timings);
+                System.out.print(diff.isEmpty() ? "No changes to pom.xml\n" : diff);
+            } else {
+                PomUtils.addDependencies(model, deps, timings);
+            }
+        }
+        reportTimings();
+    }
+
+    /**
+     * Wait for the background refresh of the catalog snapshot, which Maven
+     * would otherwise stop when it exits.
+     */
+    protected void awaitBackgroundRefresh() {
+        try {
+            if (CatalogSync.awaitBackground()) {
+                getLog().debug("Background catalog refresh finished");
+            }
+        } catch (InterruptedIOException ex) {
+            getLog().warn("Background catalog refresh was not finished: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Log the timings and write them to the timings file if one is set.
+     */
+    protected void reportTimings() {
+        timings.log(getLog(), logTimings);
+        if (timingsFile != null) {
+            try {
+                timings.writeJson(timingsFile);
+            } catch (IOException ex) {
+                getLog().warn("Could not write timings to " + timingsFile + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Add the add-ons to the dependency management of the execution root,
+     * with their versions in properties, and without version to the selected
+     * modules. Each pom is scanned and written once, in parallel. If another
+     * build changes one of the poms before they are written, the changes are
+     * computed again from the new poms.
+     *
+     * @param addons
+     * @throws MojoExecutionException if a pom could not be read or written.
+     */
+    protected void addManaged(Collection<AddonEntry> addons) throws MojoExecutionException {
+        try {
+            for (File f : PomTransaction.recover(getJournalDirectory())) {
+                getLog().warn("Restored " + f + " from an interrupted update");
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Could not restore the poms of an interrupted update from "
+                    + getJournalDirectory() + ": " + ex.getMessage(), ex);
+        }
+        for (int attempt = 1;; attempt++) {
+            if (applyAll(edits(addons))) {
+                return;
+            }
+            timings.count(Timings.POM_CONFLICTS, 1);
+            if (attempt == PomLock.ATTEMPTS) {
+                throw new MojoExecutionException("Could not update the poms, they were changed by someone else on "
+                        + "every attempt");
+            }
+            getLog().info("The poms were changed during the update, trying again");
+        }
+    }
+
+    /**
+     * The changes to the poms of the reactor adding the add-ons.
+     */
+    private Collection<PomEdit> edits(Collection<AddonEntry> addons) throws MojoExecutionException {
+        Map<String, Model> reactor = readReactorModels();
+        Model root = reactor.get("");
+        DependencyIndex rootIndex = new DependencyIndex(root);
+        Map<String, DependencyIndex> selected = new LinkedHashMap<>();
+        for (String path : selectModules(reactor)) {
+            selected.put(path, new DependencyIndex(reactor.get(path)));
+        }
+
+        Map<String, PomEdit> edits = new LinkedHashMap<>();
+        PomEdit parent = new PomEdit(project.getFile());
+        edits.put("", parent);
+        for (AddonEntry a : addons) {
+            if (rootIndex.findManagedDependency(a.getGroupId(), a.getArtifactId()) == null) {
+                String property = a.getArtifactId() + ".version";
+                String existing = root.getProperties().getProperty(property);
+                if (existing == null) {
+                    parent.addProperty(property, a.getVersion());
+                    parent.addManagedDependency(dependency(a, "${" + property + "}"));
+                } else if (existing.equals(a.getVersion())) {
+                    parent.addManagedDependency(dependency(a, "${" + property + "}"));
+                } else {
+                    // the property is used for another version, so it is
+                    // left alone and the resolved version written as is
+                    parent.addManagedDependency(dependency(a, a.getVersion()));
+                }
+            }
+            for (Map.Entry<String, DependencyIndex> m : selected.entrySet()) {
+                if (m.getValue().findDependency(a.getGroupId(), a.getArtifactId()) == null) {
+                    PomEdit edit = edits.get(m.getKey());
+                    if (edit == null) {
+                        edit = new PomEdit(moduleFile(m.getKey()));
+                        edits.put(m.getKey(), edit);
+                    }
+                    edit.addDependency(dependency(a, null));
+                }
+            }
+        }
+        return edits.values();
+    }
+
+    /**
+     * Stage the edits in parallel and write them in one transaction.
+     *
+     * @return False if nothing was written because a pom was changed after
+     * it was read.
+     */
+    private boolean applyAll(Collection<PomEdit> edits) throws MojoExecutionException {
+        List<PomEdit> pending = new ArrayList<>();
+        for (PomEdit e : edits) {
+            if (!e.isEmpty()) {
+                pending.add(e);
+            }
+        }
+        if (pending.isEmpty()) {
+            if (dryRun) {
+                System.out.println("No changes to pom.xml");
+            }
+            return true;
+        }
+        final PomTransaction transaction = new PomTransaction(getJournalDirectory());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, pending.size())));
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (final PomEdit e : pending) {
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        if (dryRun) {
+                            return e.preview(timings);
+                        }
+                        e.stage(transaction, timings);
+                        return "";
+                    }
+                }));
+            }
+            for (int i = 0; i < pending.size(); i++) {
+                System.out.print(get(pending.get(i).getFile(), results.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (dryRun) {
+            return true;
+        }
+        List<File> changed = transaction.getStagedFiles();
+        long start = timings.start();
+        try {
+            if (!transaction.commit(threads)) {
+                return false;
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Could not update the poms, no changes were made: " + ex.getMessage(), ex);
+        } finally {
+            timings.stop(Timings.WRITE_POM, start);
+        }
+        for (File f : changed) {
+            getLog().info("Updated " + f);
+        }
+        return true;
+    }
+
+    /**
+     * Directory of the journal used to undo interrupted multi-pom updates.
+     *
+     * @return
+     */
+    protected File getJournalDirectory() {
+        return new File(project.getBasedir(), ".directory-journal");
+    }
+
+    private static <T> T get(File file, Future<T> result) throws MojoExecutionException {
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            throw new MojoExecutionException("Could not update " + file + ": " + ex.getCause().getMessage(),
+                    ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while updating " + file, ex);
+        }
+    }
+
+    /**
+     * The modules managed add-ons are added to.
+     */
+    private List<String> selectModules(Map<String, Model> reactor) throws MojoExecutionException {
+        List<String> result = new ArrayList<>();
+        if (modules != null && !modules.trim().isEmpty()) {
+            for (String m : splitQueries(modules)) {
+                String path = m.equals(".") ? "" : m;
+                if (!reactor.containsKey(path)) {
+                    throw new MojoExecutionException("Unknown module " + m + ", the modules are " + reactor.keySet());
+                }
+                result.add(path);
+            }
+            return result;
+        }
+        for (Map.Entry<String, Model> m : reactor.entrySet()) {
+            if (!m.getKey().isEmpty() && !"pom".equals(m.getValue().getPackaging())) {
+                result.add(m.getKey());
+            }
+        }
+        if (result.isEmpty()) {
+            result.add("");
+        }
+        return result;
+    }
+
+    private File moduleFile(String path) {
+        if (path.isEmpty()) {
+            return project.getFile();
+        }
+        File module = new File(project.getBasedir(), path);
+        return module.isDirectory() ? new File(module, "pom.xml") : module;
+    }
+
+    private static Dependency dependency(AddonEntry a, String version) {
+        Dependency dep = new Dependency();
+        dep.setGroupId(a.getGroupId());
+        dep.setArtifactId(a.getArtifactId());
+        dep.setVersion(version);
+        return dep;
+    }
+
+    private Map<String, Model> readReactorModels() throws MojoExecutionException {
+        try {
+            return PomHelper.getReactorModels(project, getLog());
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Could not read the reactor poms: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Dependency indexes of all modules in the reactor, keyed by module path.
+     *
+     * @return
+     * @throws MojoExecutionException if the reactor poms could not be read.
+     */
+    protected Map<String, DependencyIndex> getReactorDependencies() throws MojoExecutionException {
+        Map<String, DependencyIndex> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Model> m : readReactorModels().entrySet()) {
+            String name = m.getKey().isEmpty() ? project.getArtifactId() : m.getKey();
+            result.put(name, new DependencyIndex(m.getValue()));
+        }
+        return result;
+    }
+
+    private static void printHits(String query, boolean printQuery, List<AddonEntry> hits,
+            DependencyIndex dependencies, Map<String, DependencyIndex> modules, boolean add,
+            Map<String, AddonEntry> toAdd) {
+        if (printQuery) {
+            System.out.println("Search: " + query);
+        }
+        for (AddonEntry a : hits) {
+            printAddon(dependencies, modules, a, add, toAdd);
+        }
+    }
+
+    private static List<Future<AddonEntry>> resolveAll(ExecutorService executor, VersionResolver resolver,
+            DependencyIndex dependencies, List<AddonEntry> hits) {
+        List<Future<AddonEntry>> result = new ArrayList<>(hits.size());
+        for (AddonEntry a : hits) {
+            Dependency declared = dependencies.findDependency(a.getGroupId(), a.getArtifactId());
+            if (declared == null) {
+                declared = dependencies.findManagedDependency(a.getGroupId(), a.getArtifactId());
+            }
+            result.add(resolver.submit(executor, a, dependencies.getVersion(declared)));
+        }
+        return result;
+    }
+
+    /**
+     * The resolved hits, keeping the Directory version of the add-ons whose
+     * versions could not be resolved.
+     */
+    private List<AddonEntry> getResolved(List<AddonEntry> hits, List<Future<AddonEntry>> resolved)
+            throws MojoExecutionException {
+        List<AddonEntry> result = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            try {
+                result.add(resolved.get(i).get());
+            } catch (ExecutionException ex) {
+                getLog().warn("Using the Directory version of " + hits.get(i).getKey() + ": "
+                        + ex.getCause().getMessage());
+                result.add(hits.get(i));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while resolving add-on versions", ex);
+            }
+        }
+        return result;
+    }
+
+    private static void printAddon(DependencyIndex dependencies, Map<String, DependencyIndex> modules,
+            AddonEntry a, boolean add, Map<String, AddonEntry> toAdd) {
+        System.out.println(a.getName() + " - " + a.getSummary());
+        for (String l : a.getLicenses()) {
+            System.out.print("\tLicense: " + l + "\n");
+        }
+
+        System.out.println("\tRating: " + a.getAvgRating() + " / 5");
+        if (a.getGroupId() == null || a.getArtifactId() == null) {
+            System.out.print("\tMaven: n/a");
+        } else {
+            System.out.print("\tMaven: " + a.getGroupId() + ":" + a.getArtifactId() + ":" + a.getVersion());
+        }
+        String key = DependencyIndex.key(a.getGroupId(), a.getArtifactId());
+        String users = modules == null ? "" : findUsers(modules, a);
+        String presence = null;
+        if (!users.isEmpty()) {
+            presence = "used in " + users;
+        } else if (dependencies.findDependency(a.getGroupId(), a.getArtifactId()) != null) {
+            presence = "in pom.xml";
+        } else if (add && a.hasMavenCoordinates()) {
+            if (!toAdd.containsKey(key)) {
+                toAdd.put(key, a);
+            }
+            presence = dependencies.findManagedDependency(a.getGroupId(), a.getArtifactId()) != null
+                    ? "added to pom.xml with the managed version" : "added to pom.xml";
+        } else if (dependencies.findManagedDependency(a.getGroupId(), a.getArtifactId()) != null) {
+            presence = "managed in pom.xml";
+        } else if (a.hasMavenCoordinates()) {
+            presence = "not present";
+        }
+        System.out.println(presence == null ? "" : " (" + presence + ")");
+    }
+
+    /**
+     * Comma separated names of the modules depending on the add-on.
+     */
+    private static String findUsers(Map<String, DependencyIndex> modules, AddonEntry a) {
+        StringBuilder users = new StringBuilder();
+        for (Map.Entry<String, DependencyIndex> m : modules.entrySet()) {
+            if (m.getValue().findDependency(a.getGroupId(), a.getArtifactId()) != null) {
+                users.append(users.length() > 0 ? ", " : "").append(m.getKey());
+            }
+        }
+        return users.toString();
+    }
+
+    /**
+     * Split a comma separated list of search strings, ignoring blanks and
+     * duplicates.
+     *
+     * @param searchFor
+     * @return
+     */
+    static List<String> splitQueries(String searchFor) {
+        Set<String> queries = new LinkedHashSet<>();
+        for (String q : searchFor.split(",")) {
+            if (!q.trim().isEmpty()) {
+                queries.add(q.trim());
+            }
+        }
+        return new ArrayList<>(queries);
+    }
+
+    /**
+     * Submit the searches to the executor.
+     *
+     * @param executor
+     * @param search
+     * @param version Vaadin major version.
+     * @param queries
+     * @param fullSearch
+     * @param timings Where the time of each search is added.
+     * @return Pending results by search string in the order of the queries.
+     */
+    static Map<String, Future<List<AddonEntry>>> searchAll(ExecutorService executor, final AddonSearch search,
+            final String version, List<String> queries, final boolean fullSearch, final Timings timings) {
+        Map<String, Future<List<AddonEntry>>> futures = new LinkedHashMap<>();
+        for (final String q : queries) {
+            futures.put(q, executor.submit(new Callable<List<AddonEntry>>() {
+                @Override
+                public List<AddonEntry> call() throws IOException {
+                    long start = timings.start();
+                    try {
+                        return search.search(version, q, fullSearch);
+                    } finally {
+                        timings.stop(Timings.SEARCH, start);
+                    }
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private static List<AddonEntry> get(String query, Future<List<AddonEntry>> result)
+            throws MojoExecutionException {
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            throw new MojoExecutionException("Directory search for '" + query + "' failed: "
+                    + ex.getCause().getMessage(), ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while searching the Directory", ex);
+        }
+    }
+}
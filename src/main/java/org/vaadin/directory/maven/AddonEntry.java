@@ -0,0 +1,207 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.vaadin.directory.api.Addon;
+import org.vaadin.directory.api.License;
+
+/**
+ * Local, cacheable copy of the add-on fields the plugin uses from the
+ * Directory API.
+ */
+public class AddonEntry {
+
+    private final String name;
+    private final String summary;
+    private final List<String> licenses;
+    private final double avgRating;
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+
+    public AddonEntry(String name, String summary, List<String> licenses, double avgRating,
+            String groupId, String artifactId, String version) {
+        this.name = name;
+        this.summary = summary;
+        this.licenses = licenses == null ? Collections.<String>emptyList() : licenses;
+        this.avgRating = avgRating;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+    }
+
+    /**
+     * Copy the relevant fields from a Directory API add-on.
+     *
+     * @param addon
+     * @return
+     */
+    public static AddonEntry from(Addon addon) {
+        List<String> licenses = new ArrayList<>();
+        if (addon.getLicenses() != null) {
+            for (License l : addon.getLicenses()) {
+                licenses.add(l.getName());
+            }
+        }
+        Number rating = addon.getAvgRating();
+        return new AddonEntry(addon.getName(), addon.getSummary(), licenses,
+                rating == null ? 0 : rating.doubleValue(),
+                addon.getGroupId(), addon.getArtifactId(), addon.getVersion());
+    }
+
+    /**
+     * Copy a list of Directory API add-ons.
+     *
+     * @param addons
+     * @return
+     */
+    public static List<AddonEntry> fromAll(List<Addon> addons) {
+        List<AddonEntry> result = new ArrayList<>();
+        if (addons != null) {
+            for (Addon a : addons) {
+                result.add(from(a));
+            }
+        }
+        return result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public List<String> getLicenses() {
+        return licenses;
+    }
+
+    public double getAvgRating() {
+        return avgRating;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * A copy of this add-on with another version.
+     *
+     * @param version
+     * @return
+     */
+    public AddonEntry withVersion(String version) {
+        return new AddonEntry(name, summary, licenses, avgRating, groupId, artifactId, version);
+    }
+
+    /**
+     * True if this add-on has Maven coordinates.
+     *
+     * @return
+     */
+    public boolean hasMavenCoordinates() {
+        return groupId != null && artifactId != null;
+    }
+
+    /**
+     * Identity of the add-on across catalog versions: its Maven coordinates,
+     * or its name if it has none.
+     *
+     * @return
+     */
+    public String getKey() {
+        return hasMavenCoordinates() ? groupId + ":" + artifactId : "name:" + name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AddonEntry)) {
+            return false;
+        }
+        AddonEntry o = (AddonEntry) obj;
+        return Double.compare(avgRating, o.avgRating) == 0
+                && equal(name, o.name) && equal(summary, o.summary) && licenses.equals(o.licenses)
+                && equal(groupId, o.groupId) && equal(artifactId, o.artifactId) && equal(version, o.version);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new Object[]{name, summary, licenses, avgRating, groupId, artifactId, version});
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    void write(DataOutput out) throws IOException {
+        writeString(out, name);
+        writeString(out, summary);
+        out.writeInt(licenses.size());
+        for (String l : licenses) {
+            writeString(out, l);
+        }
+        out.writeDouble(avgRating);
+        writeString(out, groupId);
+        writeString(out, artifactId);
+        writeString(out, version);
+    }
+
+    static AddonEntry read(DataInput in) throws IOException {
+        String name = readString(in);
+        String summary = readString(in);
+        int count = in.readInt();
+        List<String> licenses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            licenses.add(readString(in));
+        }
+        double avgRating = in.readDouble();
+        return new AddonEntry(name, summary, licenses, avgRating,
+                readString(in), readString(in), readString(in));
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,104 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Orders search hits by relevance and rating.
+ *
+ * Searches return their hits best match first, so relevance is derived from
+ * the position of a hit. Only the best <code>offset + limit</code> hits are
+ * kept in a bounded heap, so a broad search is not sorted as a whole.
+ */
+public class AddonRanking {
+
+    private final double relevanceWeight;
+    private final double ratingWeight;
+
+    public AddonRanking(double relevanceWeight, double ratingWeight) {
+        this.relevanceWeight = relevanceWeight;
+        this.ratingWeight = ratingWeight;
+    }
+
+    /**
+     * Select a page of the best ranked hits.
+     *
+     * @param hits Search hits, best match first.
+     * @param offset Number of best hits to skip.
+     * @param limit Maximum number of hits to return, zero or negative for all.
+     * @return The selected hits, best first.
+     */
+    public List<AddonEntry> top(List<AddonEntry> hits, int offset, int limit) {
+        offset = Math.max(0, offset);
+        int keep = limit > 0 ? offset + limit : hits.size();
+        if (keep <= 0 || offset >= hits.size()) {
+            return new ArrayList<>();
+        }
+
+        // min-heap of the best hits so far, the worst kept hit on top
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(Math.min(keep, hits.size()));
+        for (int i = 0; i < hits.size(); i++) {
+            Ranked r = new Ranked(hits.get(i), i, score(hits.get(i), i, hits.size()));
+            if (heap.size() < keep) {
+                heap.add(r);
+            } else if (r.compareTo(heap.peek()) > 0) {
+                heap.poll();
+                heap.add(r);
+            }
+        }
+
+        Ranked[] ranked = heap.toArray(new Ranked[heap.size()]);
+        Arrays.sort(ranked);
+        List<AddonEntry> result = new ArrayList<>();
+        for (int i = ranked.length - 1 - offset; i >= 0; i--) {
+            result.add(ranked[i].entry);
+        }
+        return result;
+    }
+
+    private double score(AddonEntry entry, int position, int count) {
+        double relevance = 1.0 - (double) position / count;
+        double rating = Math.max(0, Math.min(5, entry.getAvgRating())) / 5.0;
+        return relevanceWeight * relevance + ratingWeight * rating;
+    }
+
+    private static class Ranked implements Comparable<Ranked> {
+
+        final AddonEntry entry;
+        final int position;
+        final double score;
+
+        Ranked(AddonEntry entry, int position, double score) {
+            this.entry = entry;
+            this.position = position;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Ranked o) {
+            int c = Double.compare(score, o.score);
+            // on equal score the earlier hit ranks higher
+            return c != 0 ? c : Integer.compare(o.position, position);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A way to answer Directory add-on searches.
+ */
+public interface AddonSearch {
+
+    /**
+     * Search add-ons.
+     *
+     * @param version Vaadin major version.
+     * @param query The search string.
+     * @param fullSearch Search also descriptions, not only names.
+     * @return Matching add-ons, best match first.
+     * @throws IOException if the search could not be answered.
+     */
+    List<AddonEntry> search(String version, String query, boolean fullSearch) throws IOException;
+}
@@ -0,0 +1,460 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary add-on catalog, read through a read-only memory mapping.
+ *
+ * Layout, all integers big endian:
+ * <pre>
+ * header   magic, format version, record count, offsets of the string,
+ *          license and record sections, offset and size of the name index
+ * strings  deduplicated UTF-8 strings, each prefixed by its byte length
+ * licenses per add-on: count followed by string offsets
+ * records  fixed width: offsets of name, summary, groupId, artifactId,
+ *          version and license list, then the average rating
+ * names    (lower case name token, record) pairs sorted by token
+ * </pre>
+ * A string offset of -1 is <code>null</code>. Opening a catalog checks
+ * that the sections and every offset in them lie within the file, without
+ * decoding anything, so a truncated or corrupt file is rejected up front.
+ * Add-ons are decoded when accessed, and name searches run on the mapped
+ * index, so heap use does not grow with the size of the catalog.
+ */
+public class BinaryCatalog extends AbstractList<AddonEntry> {
+
+    /**
+     * File name extension of catalog files.
+     */
+    public static final String EXTENSION = ".vdc";
+
+    private static final int MAGIC = 0x56444331;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int RECORD_SIZE = 32;
+
+    private static final int TOKEN_SIZE = 8;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int stringsOffset;
+    private final int licensesOffset;
+    private final int recordsOffset;
+    private final int tokensOffset;
+    private final int tokenCount;
+
+    private BinaryCatalog(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not a catalog file of format " + FORMAT_VERSION);
+        }
+        count = buffer.getInt(8);
+        stringsOffset = buffer.getInt(12);
+        licensesOffset = buffer.getInt(16);
+        recordsOffset = buffer.getInt(20);
+        tokensOffset = buffer.getInt(24);
+        tokenCount = buffer.getInt(28);
+        validate();
+    }
+
+    /**
+     * Check that every section and every offset read by {@link #get(int)}
+     * and {@link #searchNames(String, BitSet)} lies within the buffer.
+     */
+    private void validate() throws IOException {
+        if (stringsOffset != HEADER_SIZE || licensesOffset < stringsOffset || recordsOffset < licensesOffset
+                || count < 0 || tokenCount < 0
+                || (long) recordsOffset + (long) count * RECORD_SIZE != tokensOffset
+                || (long) tokensOffset + (long) tokenCount * TOKEN_SIZE != buffer.capacity()) {
+            throw corrupt();
+        }
+        for (int i = 0; i < count; i++) {
+            int r = recordsOffset + i * RECORD_SIZE;
+            for (int field = 0; field < 5; field++) {
+                checkString(buffer.getInt(r + field * 4), true);
+            }
+            int licensesAt = buffer.getInt(r + 20);
+            if (licensesAt < licensesOffset || licensesAt > recordsOffset - 4) {
+                throw corrupt();
+            }
+            int licenseCount = buffer.getInt(licensesAt);
+            if (licenseCount < 0 || licenseCount > (recordsOffset - licensesAt - 4) / 4) {
+                throw corrupt();
+            }
+            for (int l = 0; l < licenseCount; l++) {
+                checkString(buffer.getInt(licensesAt + 4 + l * 4), true);
+            }
+        }
+        for (int i = 0; i < tokenCount; i++) {
+            int t = tokensOffset + i * TOKEN_SIZE;
+            checkString(buffer.getInt(t), false);
+            int record = buffer.getInt(t + 4);
+            if (record < 0 || record >= count) {
+                throw corrupt();
+            }
+        }
+    }
+
+    private void checkString(int at, boolean nullable) throws IOException {
+        if (at == -1 && nullable) {
+            return;
+        }
+        if (at < stringsOffset || at > licensesOffset - 4) {
+            throw corrupt();
+        }
+        int length = buffer.getInt(at);
+        if (length < 0 || length > licensesOffset - at - 4) {
+            throw corrupt();
+        }
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Corrupt catalog file");
+    }
+
+    /**
+     * Map a catalog file.
+     *
+     * @param file
+     * @return The catalog or <code>null</code> if the file does not exist.
+     * @throws IOException if the file is not a catalog of this format.
+     */
+    public static BinaryCatalog open(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            return new BinaryCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public AddonEntry get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        int r = recordsOffset + index * RECORD_SIZE;
+        int licensesAt = buffer.getInt(r + 20);
+        int licenseCount = buffer.getInt(licensesAt);
+        List<String> licenses = new ArrayList<>(licenseCount);
+        for (int i = 0; i < licenseCount; i++) {
+            licenses.add(string(buffer.getInt(licensesAt + 4 + i * 4)));
+        }
+        return new AddonEntry(string(buffer.getInt(r)), string(buffer.getInt(r + 4)), licenses,
+                buffer.getDouble(r + 24),
+                string(buffer.getInt(r + 8)), string(buffer.getInt(r + 12)), string(buffer.getInt(r + 16)));
+    }
+
+    /**
+     * Find add-ons whose name contains all terms of the query, the last term
+     * also as a prefix. Hits matching rarer terms rank first.
+     *
+     * @param query The search string.
+     * @param allowed Record numbers of the add-ons to consider, or
+     * <code>null</code> for all.
+     * @return
+     */
+    public List<AddonEntry> searchNames(String query, BitSet allowed) {
+        List<String> terms = CatalogIndex.tokenize(query);
+        if (terms.isEmpty()) {
+            List<AddonEntry> all = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                if (allowed == null || allowed.get(i)) {
+                    all.add(get(i));
+                }
+            }
+            return all;
+        }
+        Map<Integer, Double> scores = null;
+        for (int t = 0; t < terms.size(); t++) {
+            byte[] term = terms.get(t).getBytes(StandardCharsets.UTF_8);
+            boolean prefix = t == terms.size() - 1;
+            int from = lowerBound(term);
+            int to = prefix ? prefixEnd(term, from) : upperBound(term, from);
+            Set<Integer> records = new HashSet<>();
+            for (int i = from; i < to; i++) {
+                int record = buffer.getInt(tokensOffset + i * TOKEN_SIZE + 4);
+                if (allowed == null || allowed.get(record)) {
+                    records.add(record);
+                }
+            }
+            double idf = Math.log(1 + (double) count / Math.max(1, records.size()));
+            Map<Integer, Double> next = new HashMap<>();
+            for (Integer record : records) {
+                if (scores == null || scores.containsKey(record)) {
+                    next.put(record, (scores == null ? 0 : scores.get(record)) + idf);
+                }
+            }
+            scores = next;
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        final Map<Integer, Double> score = scores;
+        List<Integer> hits = new ArrayList<>(score.keySet());
+        Collections.sort(hits, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(score.get(b), score.get(a));
+                return c != 0 ? c : Integer.compare(a, b);
+            }
+        });
+        List<AddonEntry> result = new ArrayList<>(hits.size());
+        for (Integer record : hits) {
+            result.add(get(record));
+        }
+        return result;
+    }
+
+    /**
+     * First token not less than the term.
+     */
+    private int lowerBound(byte[] term) {
+        int lo = 0;
+        int hi = tokenCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareToken(mid, term, false) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First token greater than the term, searching from <code>from</code>.
+     */
+    private int upperBound(byte[] term, int from) {
+        int lo = from;
+        int hi = tokenCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareToken(mid, term, false) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First token not starting with the term, searching from
+     * <code>from</code>.
+     */
+    private int prefixEnd(byte[] term, int from) {
+        int lo = from;
+        int hi = tokenCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareToken(mid, term, true) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Compare the UTF-8 bytes of a token with a term without decoding it.
+     * With <code>prefixOnly</code> only the first term length bytes count.
+     */
+    private int compareToken(int index, byte[] term, boolean prefixOnly) {
+        int at = buffer.getInt(tokensOffset + index * TOKEN_SIZE);
+        int length = buffer.getInt(at);
+        int n = Math.min(length, term.length);
+        for (int i = 0; i < n; i++) {
+            int c = (buffer.get(at + 4 + i) & 0xff) - (term[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        if (prefixOnly && length >= term.length) {
+            return 0;
+        }
+        return length - term.length;
+    }
+
+    private String string(int at) {
+        if (at < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[buffer.getInt(at)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(at + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a catalog file.
+     *
+     * @param out
+     * @param entries
+     * @throws IOException
+     */
+    public static void write(OutputStream out, List<AddonEntry> entries) throws IOException {
+        StringTable strings = new StringTable(HEADER_SIZE);
+        for (AddonEntry e : entries) {
+            strings.add(e.getName());
+            strings.add(e.getSummary());
+            strings.add(e.getGroupId());
+            strings.add(e.getArtifactId());
+            strings.add(e.getVersion());
+            for (String l : e.getLicenses()) {
+                strings.add(l);
+            }
+        }
+        final List<Object[]> tokens = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            for (String token : new HashSet<>(CatalogIndex.tokenize(entries.get(i).getName()))) {
+                strings.add(token);
+                tokens.add(new Object[]{token.getBytes(StandardCharsets.UTF_8), strings.offset(token), i});
+            }
+        }
+        Collections.sort(tokens, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] a, Object[] b) {
+                int c = compareBytes((byte[]) a[0], (byte[]) b[0]);
+                return c != 0 ? c : Integer.compare((Integer) a[2], (Integer) b[2]);
+            }
+        });
+
+        int licensesOffset = strings.end();
+        ByteArrayOutputStream licenseBytes = new ByteArrayOutputStream();
+        DataOutputStream licenseData = new DataOutputStream(licenseBytes);
+        int[] licenseLists = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            licenseLists[i] = licensesOffset + licenseData.size();
+            List<String> licenses = entries.get(i).getLicenses();
+            licenseData.writeInt(licenses.size());
+            for (String l : licenses) {
+                licenseData.writeInt(strings.offset(l));
+            }
+        }
+        int recordsOffset = licensesOffset + licenseData.size();
+        int tokensOffset = recordsOffset + entries.size() * RECORD_SIZE;
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(entries.size());
+        data.writeInt(HEADER_SIZE);
+        data.writeInt(licensesOffset);
+        data.writeInt(recordsOffset);
+        data.writeInt(tokensOffset);
+        data.writeInt(tokens.size());
+        strings.writeTo(data);
+        licenseBytes.writeTo(data);
+        for (int i = 0; i < entries.size(); i++) {
+            AddonEntry e = entries.get(i);
+            data.writeInt(strings.offset(e.getName()));
+            data.writeInt(strings.offset(e.getSummary()));
+            data.writeInt(strings.offset(e.getGroupId()));
+            data.writeInt(strings.offset(e.getArtifactId()));
+            data.writeInt(strings.offset(e.getVersion()));
+            data.writeInt(licenseLists[i]);
+            data.writeDouble(e.getAvgRating());
+        }
+        for (Object[] token : tokens) {
+            data.writeInt((Integer) token[1]);
+            data.writeInt((Integer) token[2]);
+        }
+        data.flush();
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int c = (a[i] & 0xff) - (b[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Deduplicating string section being written.
+     */
+    private static class StringTable {
+
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream data = new DataOutputStream(bytes);
+        private final int start;
+
+        StringTable(int start) {
+            this.start = start;
+        }
+
+        void add(String s) throws IOException {
+            if (s != null && !offsets.containsKey(s)) {
+                offsets.put(s, start + data.size());
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(utf8.length);
+                data.write(utf8);
+            }
+        }
+
+        int offset(String s) {
+            return s == null ? -1 : offsets.get(s);
+        }
+
+        int end() {
+            return start + data.size();
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            bytes.writeTo(out);
+        }
+    }
+}
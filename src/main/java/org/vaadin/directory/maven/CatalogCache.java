@@ -0,0 +1,411 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * On-disk cache of Directory search results.
+ *
+ * Entries are stored one file per (Vaadin version, query mode, query) and the
+ * file modification time is used as the fetch time. An expired entry is
+ * revalidated against the Directory: if the result is unchanged only the
+ * timestamp is touched, and if the Directory cannot be reached the stale
+ * entry is served instead of failing the build. Concurrent loads of the same
+ * entry within the JVM share one remote call, and wait for a
+ * {@link CatalogSync} writing the same catalog snapshot. Builds sharing the
+ * cache directory take turns through lock files next to the entries, and
+ * entries are replaced by moving a complete new file over them.
+ */
+public class CatalogCache implements AddonSearch {
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Concurrent loads of the same entry, shared by all modules of a
+     * parallel build.
+     */
+    private static final SingleFlight<List<AddonEntry>> LOADS = new SingleFlight<>();
+
+    /**
+     * Locks of the files written by loads and catalog synchronizations, so
+     * that only one thread of this JVM reads and writes a file at a time.
+     */
+    private static final ConcurrentMap<String, Object> FILE_LOCKS = new ConcurrentHashMap<>();
+
+    private final File directory;
+    private final long ttlMillis;
+    private final DirectoryClient client;
+    private Timings timings = new Timings();
+
+    /**
+     * Create a cache.
+     *
+     * @param directory Root directory of the cache.
+     * @param ttlMinutes How long entries are fresh. Zero or negative always
+     * revalidates.
+     */
+    public CatalogCache(File directory, long ttlMinutes) {
+        this(directory, ttlMinutes, new DirectoryClient());
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param directory Root directory of the cache.
+     * @param ttlMinutes How long entries are fresh. Zero or negative always
+     * revalidates.
+     * @param client Client used for remote searches.
+     */
+    public CatalogCache(File directory, long ttlMinutes, DirectoryClient client) {
+        this.directory = directory;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.client = client;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Measure the remote calls made by this cache.
+     *
+     * @param timings
+     */
+    public void setTimings(Timings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * Search the Directory, answering from the cache when possible.
+     *
+     * @param version Vaadin major version.
+     * @param query The search string.
+     * @param fullSearch Search also descriptions.
+     * @return
+     */
+    @Override
+    public List<AddonEntry> search(String version, String query, boolean fullSearch) throws IOException {
+        return load(entryFile(version, query, fullSearch), version, query, fullSearch);
+    }
+
+    /**
+     * The catalog snapshot of all add-ons for a Vaadin version.
+     *
+     * The Directory API has no dedicated export, so the snapshot is the
+     * result of an unfiltered full search.
+     *
+     * @param version Vaadin major version.
+     * @param allowRemote Download or revalidate the snapshot if needed.
+     * @return The snapshot or <code>null</code> if there is none locally and
+     * remote access was not allowed.
+     */
+    public List<AddonEntry> catalog(String version, boolean allowRemote) throws IOException {
+        File file = catalogFile(version);
+        if (!allowRemote) {
+            return read(file);
+        }
+        return load(file, version, "", true);
+    }
+
+    private List<AddonEntry> load(final File file, final String version, final String query,
+            final boolean fullSearch) throws IOException {
+        return LOADS.execute(file.getAbsolutePath(), new Callable<List<AddonEntry>>() {
+            @Override
+            public List<AddonEntry> call() throws IOException {
+                return loadNow(file, version, query, fullSearch);
+            }
+        });
+    }
+
+    private List<AddonEntry> loadNow(final File file, final String version, final String query,
+            final boolean fullSearch) throws IOException {
+        return locked(file, new Callable<List<AddonEntry>>() {
+            @Override
+            public List<AddonEntry> call() throws IOException {
+                return loadLocked(file, version, query, fullSearch);
+            }
+        });
+    }
+
+    private List<AddonEntry> loadLocked(File file, String version, String query, boolean fullSearch)
+            throws IOException {
+        List<AddonEntry> cached = read(file);
+        if (cached != null && isFresh(file)) {
+            return cached;
+        }
+
+        List<AddonEntry> fetched;
+        long start = timings.start();
+        try {
+            fetched = client.search(version, query, fullSearch);
+        } catch (IOException ex) {
+            if (cached != null) {
+                Logger.getLogger(CatalogCache.class.getName()).log(Level.WARNING,
+                        "Directory search failed, using cached result from " + file, ex);
+                return cached;
+            }
+            throw ex;
+        } finally {
+            timings.stop(Timings.NETWORK, start);
+        }
+
+        if (cached != null && digest(cached).equals(digest(fetched))) {
+            file.setLastModified(System.currentTimeMillis());
+        } else {
+            write(file, fetched);
+        }
+        return fetched;
+    }
+
+    /**
+     * True if the local catalog snapshot exists and has not expired.
+     *
+     * @param version Vaadin major version.
+     * @return
+     */
+    public boolean isCatalogFresh(String version) {
+        File file = catalogFile(version);
+        return file.isFile() && isFresh(file);
+    }
+
+    /**
+     * Run a call holding the lock of a cache file, both in this JVM and
+     * against other builds sharing the cache. The lock of another process
+     * is held on a lock file next to the cache file. If the lock file cannot
+     * be created, as in a read-only cache, the call only holds the lock in
+     * this JVM.
+     *
+     * @param file
+     * @param call Reads and writes the file.
+     * @return The result of the call.
+     * @throws IOException if the call failed with one.
+     */
+    static <T> T locked(File file, Callable<T> call) throws IOException {
+        synchronized (jvmLock(file)) {
+            FileChannel channel = null;
+            try {
+                file.getParentFile().mkdirs();
+                channel = FileChannel.open(new File(file.getPath() + ".lock").toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE);
+                channel.lock();
+            } catch (ClosedByInterruptException ex) {
+                throw new InterruptedIOException("Interrupted while waiting for the lock on " + file);
+            } catch (IOException | OverlappingFileLockException ex) {
+                Logger.getLogger(CatalogCache.class.getName()).log(Level.FINE,
+                        "Not locking " + file + " against other processes", ex);
+                close(channel);
+                channel = null;
+            }
+            try {
+                return call.call();
+            } catch (IOException | RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IOException(ex);
+            } finally {
+                // closing the channel releases its lock
+                close(channel);
+            }
+        }
+    }
+
+    private static Object jvmLock(File file) {
+        String key = file.getAbsolutePath();
+        Object lock = FILE_LOCKS.get(key);
+        if (lock == null) {
+            Object created = new Object();
+            lock = FILE_LOCKS.putIfAbsent(key, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    private static void close(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            Logger.getLogger(CatalogCache.class.getName()).log(Level.FINE, "Could not close a lock file", ex);
+        }
+    }
+
+    DirectoryClient getClient() {
+        return client;
+    }
+
+    private boolean isFresh(File file) {
+        return ttlMillis > 0 && System.currentTimeMillis() - file.lastModified() < ttlMillis;
+    }
+
+    File catalogFile(String version) {
+        return new File(new File(directory, version), "catalog" + BinaryCatalog.EXTENSION);
+    }
+
+    private static boolean isBinaryCatalog(File file) {
+        return file.getName().endsWith(BinaryCatalog.EXTENSION);
+    }
+
+    File entryFile(String version, String query, boolean fullSearch) {
+        String mode = fullSearch ? "full" : "name";
+        return new File(new File(new File(directory, version), mode), digest(query) + ".bin");
+    }
+
+    static List<AddonEntry> read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            if (isBinaryCatalog(file)) {
+                return BinaryCatalog.open(file);
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return readEntries(in);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(CatalogCache.class.getName()).log(Level.WARNING, "Ignoring unreadable cache entry " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Replace a cache file. The entries are written to a new temporary file
+     * that is then moved over the file, so readers in other processes see
+     * either the old or the new file. Failures are only logged.
+     *
+     * @param file
+     * @param entries
+     */
+    static void write(File file, List<AddonEntry> entries) {
+        Path tmp = null;
+        try {
+            file.getParentFile().mkdirs();
+            tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName() + ".", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tmp)))) {
+                if (isBinaryCatalog(file)) {
+                    BinaryCatalog.write(out, entries);
+                } else {
+                    writeEntries(out, entries);
+                }
+            }
+            PomWriter.moveOver(tmp, file.toPath());
+        } catch (IOException ex) {
+            Logger.getLogger(CatalogCache.class.getName()).log(Level.WARNING, "Could not write cache entry " + file, ex);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ex) {
+                    Logger.getLogger(CatalogCache.class.getName()).log(Level.FINE, "Could not delete " + tmp, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a list of entries in the cache format.
+     *
+     * @param in
+     * @return The entries or <code>null</code> if they were written in
+     * another format version.
+     * @throws IOException
+     */
+    static List<AddonEntry> readEntries(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        int count = in.readInt();
+        List<AddonEntry> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(AddonEntry.read(in));
+        }
+        return result;
+    }
+
+    /**
+     * Write a list of entries in the cache format.
+     *
+     * @param out
+     * @param entries
+     * @throws IOException
+     */
+    static void writeEntries(DataOutputStream out, List<AddonEntry> entries) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        for (AddonEntry e : entries) {
+            e.write(out);
+        }
+    }
+
+    private static String digest(List<AddonEntry> entries) {
+        StringBuilder sb = new StringBuilder();
+        for (AddonEntry e : entries) {
+            sb.append(e.getName()).append('\n')
+                    .append(e.getSummary()).append('\n')
+                    .append(e.getLicenses()).append('\n')
+                    .append(e.getAvgRating()).append('\n')
+                    .append(e.getGroupId()).append(':')
+                    .append(e.getArtifactId()).append(':')
+                    .append(e.getVersion()).append('\n');
+        }
+        return digest(sb.toString());
+    }
+
+    private static String digest(String s) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
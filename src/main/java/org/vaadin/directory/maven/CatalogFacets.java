@@ -0,0 +1,118 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * License and rating facets of a catalog snapshot.
+ *
+ * Each distinct license has a bitmap of the add-ons under it, and ratings
+ * are kept as a sorted column, so a filter is answered with bitmap unions
+ * and intersections and one binary search instead of a scan of the catalog.
+ */
+public class CatalogFacets {
+
+    private final int size;
+    private final Map<String, BitSet> licenses = new HashMap<>();
+    private final double[] ratings;
+    private final int[] docsByRating;
+
+    public CatalogFacets(List<AddonEntry> entries) {
+        size = entries.size();
+        final double[] rating = new double[size];
+        Integer[] order = new Integer[size];
+        for (int doc = 0; doc < size; doc++) {
+            AddonEntry e = entries.get(doc);
+            rating[doc] = e.getAvgRating();
+            order[doc] = doc;
+            for (String l : e.getLicenses()) {
+                String key = FacetFilter.normalizeLicense(l);
+                BitSet docs = licenses.get(key);
+                if (docs == null) {
+                    docs = new BitSet(size);
+                    licenses.put(key, docs);
+                }
+                docs.set(doc);
+            }
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(rating[a], rating[b]);
+            }
+        });
+        ratings = new double[size];
+        docsByRating = new int[size];
+        for (int i = 0; i < size; i++) {
+            docsByRating[i] = order[i];
+            ratings[i] = rating[order[i]];
+        }
+    }
+
+    /**
+     * The add-ons passing the filter.
+     *
+     * @param filter
+     * @return A bitmap of document numbers, or <code>null</code> if the
+     * filter lets everything through.
+     */
+    public BitSet select(FacetFilter filter) {
+        if (filter == null || filter.isEmpty()) {
+            return null;
+        }
+        BitSet result = new BitSet(size);
+        if (filter.getLicense() != null) {
+            for (Map.Entry<String, BitSet> l : licenses.entrySet()) {
+                if (filter.licenseMatches(l.getKey())) {
+                    result.or(l.getValue());
+                }
+            }
+        } else {
+            result.set(0, size);
+        }
+        if (filter.getMinRating() > 0) {
+            BitSet rated = new BitSet(size);
+            for (int i = firstAtLeast(filter.getMinRating()); i < size; i++) {
+                rated.set(docsByRating[i]);
+            }
+            result.and(rated);
+        }
+        return result;
+    }
+
+    private int firstAtLeast(double min) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ratings[mid] < min) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,266 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over an add-on catalog snapshot.
+ *
+ * Names and summaries are tokenized into lower case terms. Each term maps to
+ * the add-ons containing it with per-field term frequencies, and matches are
+ * scored with name-weighted tf-idf. The last query term also matches as a
+ * prefix so partially typed words find their add-ons.
+ */
+public class CatalogIndex {
+
+    private static final int NAME_WEIGHT = 3;
+
+    private final List<AddonEntry> entries;
+    private TreeMap<String, Postings> terms;
+    private FuzzyIndex fuzzyIndex;
+    private CatalogFacets facets;
+
+    /**
+     * Create an index. The terms are indexed on the first search.
+     *
+     * @param entries
+     */
+    public CatalogIndex(List<AddonEntry> entries) {
+        this.entries = entries;
+    }
+
+    private synchronized TreeMap<String, Postings> getTerms() {
+        if (terms == null) {
+            Map<String, Postings> building = new HashMap<>();
+            for (int doc = 0; doc < entries.size(); doc++) {
+                AddonEntry e = entries.get(doc);
+                addField(building, doc, e.getName(), true);
+                addField(building, doc, e.getSummary(), false);
+            }
+            terms = new TreeMap<>();
+            for (Map.Entry<String, Postings> t : building.entrySet()) {
+                t.getValue().trim();
+                terms.put(t.getKey(), t.getValue());
+            }
+        }
+        return terms;
+    }
+
+    public List<AddonEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * The typo tolerant name index of the same catalog, built on first use.
+     *
+     * @return
+     */
+    public synchronized FuzzyIndex getFuzzyIndex() {
+        if (fuzzyIndex == null) {
+            fuzzyIndex = new FuzzyIndex(entries);
+        }
+        return fuzzyIndex;
+    }
+
+    /**
+     * The license and rating facets of the same catalog, built on first use.
+     *
+     * @return
+     */
+    public synchronized CatalogFacets getFacets() {
+        if (facets == null) {
+            facets = new CatalogFacets(entries);
+        }
+        return facets;
+    }
+
+    /**
+     * Find add-ons matching all terms of the query.
+     *
+     * @param query The search string.
+     * @param fullSearch Match also summaries, not only names.
+     * @return Matching add-ons, best score first.
+     */
+    public List<AddonEntry> search(String query, boolean fullSearch) {
+        return search(query, fullSearch, null);
+    }
+
+    /**
+     * Find add-ons matching all terms of the query among the allowed ones.
+     *
+     * @param query The search string.
+     * @param fullSearch Match also summaries, not only names.
+     * @param allowed Document numbers of the add-ons to consider, or
+     * <code>null</code> for all.
+     * @return Matching add-ons, best score first.
+     */
+    public List<AddonEntry> search(String query, boolean fullSearch, BitSet allowed) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return select(allowed);
+        }
+        TreeMap<String, Postings> terms = getTerms();
+        float[] scores = new float[entries.size()];
+        int[] matched = new int[entries.size()];
+        for (int q = 0; q < queryTerms.size(); q++) {
+            String term = queryTerms.get(q);
+            boolean last = q == queryTerms.size() - 1;
+            Map<String, Postings> hits = last
+                    ? terms.subMap(term, term + Character.MAX_VALUE)
+                    : Collections.singletonMap(term, terms.get(term));
+            // a document matching several expansions of a term counts once
+            int[] seen = new int[entries.size()];
+            for (Postings p : hits.values()) {
+                if (p == null) {
+                    continue;
+                }
+                float idf = (float) Math.log(1 + (double) entries.size() / p.size);
+                for (int i = 0; i < p.size; i++) {
+                    int tf = p.nameTf[i] * NAME_WEIGHT + (fullSearch ? p.summaryTf[i] : 0);
+                    if (tf == 0) {
+                        continue;
+                    }
+                    int doc = p.docs[i];
+                    scores[doc] += tf * idf;
+                    if (seen[doc] == 0) {
+                        seen[doc] = 1;
+                        matched[doc]++;
+                    }
+                }
+            }
+        }
+
+        List<Integer> docs = new ArrayList<>();
+        for (int doc = 0; doc < matched.length; doc++) {
+            if (matched[doc] == queryTerms.size() && (allowed == null || allowed.get(doc))) {
+                docs.add(doc);
+            }
+        }
+        Integer[] sorted = docs.toArray(new Integer[docs.size()]);
+        Arrays.sort(sorted, new ScoreComparator(scores));
+        List<AddonEntry> result = new ArrayList<>(sorted.length);
+        for (Integer doc : sorted) {
+            result.add(entries.get(doc));
+        }
+        return result;
+    }
+
+    private List<AddonEntry> select(BitSet allowed) {
+        if (allowed == null) {
+            return new ArrayList<>(entries);
+        }
+        List<AddonEntry> result = new ArrayList<>(allowed.cardinality());
+        for (int doc = allowed.nextSetBit(0); doc >= 0; doc = allowed.nextSetBit(doc + 1)) {
+            result.add(entries.get(doc));
+        }
+        return result;
+    }
+
+    private static void addField(Map<String, Postings> index, int doc, String text, boolean name) {
+        for (String term : tokenize(text)) {
+            Postings p = index.get(term);
+            if (p == null) {
+                p = new Postings();
+                index.put(term, p);
+            }
+            p.add(doc, name);
+        }
+    }
+
+    /**
+     * Split text into lower case letter and digit runs.
+     *
+     * @param text
+     * @return
+     */
+    static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                result.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Documents containing a term, in ascending document order.
+     */
+    private static class Postings {
+
+        int[] docs = new int[2];
+        int[] nameTf = new int[2];
+        int[] summaryTf = new int[2];
+        int size;
+
+        void add(int doc, boolean name) {
+            if (size == 0 || docs[size - 1] != doc) {
+                if (size == docs.length) {
+                    docs = Arrays.copyOf(docs, size * 2);
+                    nameTf = Arrays.copyOf(nameTf, size * 2);
+                    summaryTf = Arrays.copyOf(summaryTf, size * 2);
+                }
+                docs[size++] = doc;
+            }
+            if (name) {
+                nameTf[size - 1]++;
+            } else {
+                summaryTf[size - 1]++;
+            }
+        }
+
+        void trim() {
+            docs = Arrays.copyOf(docs, size);
+            nameTf = Arrays.copyOf(nameTf, size);
+            summaryTf = Arrays.copyOf(summaryTf, size);
+        }
+    }
+
+    private static class ScoreComparator implements Comparator<Integer> {
+
+        private final float[] scores;
+
+        ScoreComparator(float[] scores) {
+            this.scores = scores;
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            int c = Float.compare(scores[b], scores[a]);
+            return c != 0 ? c : Integer.compare(a, b);
+        }
+    }
+}
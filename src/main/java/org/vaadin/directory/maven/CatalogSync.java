@@ -0,0 +1,230 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Synchronizes the local catalog snapshot with the Directory.
+ *
+ * The Directory API cannot list only the add-ons changed since a given
+ * time, so every synchronization downloads the whole listing. The listing
+ * is compared with the local snapshot entry by entry, keyed by Maven
+ * coordinates, to report the added, changed and removed add-ons, and the
+ * snapshot file is rewritten only when there are any. A snapshot that is
+ * missing or stored in an older format is replaced.
+ *
+ * The snapshot is read and written holding the same lock as
+ * {@link CatalogCache} loads of it, so the two never write it at the same
+ * time.
+ */
+public class CatalogSync {
+
+    private static final SingleFlight<Result> SYNCS = new SingleFlight<>();
+
+    /**
+     * Background synchronizations nobody has waited for yet. They are only
+     * removed by {@link #awaitBackground()}.
+     */
+    private static final Queue<Future<?>> BACKGROUND = new ConcurrentLinkedQueue<>();
+
+    private final CatalogCache cache;
+
+    public CatalogSync(CatalogCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Synchronize the snapshot now, regardless of its age.
+     *
+     * @param version Vaadin major version.
+     * @return What changed.
+     * @throws IOException if the Directory could not be reached.
+     */
+    public Result sync(final String version) throws IOException {
+        final File file = cache.catalogFile(version);
+        return SYNCS.execute(file.getAbsolutePath(), new Callable<Result>() {
+            @Override
+            public Result call() throws IOException {
+                return syncNow(file, version);
+            }
+        });
+    }
+
+    /**
+     * Synchronize the snapshot on a background thread. Failures are only
+     * logged, the current snapshot stays in use. The thread does not keep
+     * the JVM running, so a build using it should
+     * {@link #awaitBackground() wait for it} before it ends.
+     *
+     * @param version Vaadin major version.
+     */
+    public void syncInBackground(final String version) {
+        FutureTask<Void> task = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sync(version);
+                } catch (IOException | RuntimeException ex) {
+                    Logger.getLogger(CatalogSync.class.getName()).log(Level.FINE,
+                            "Background catalog refresh failed", ex);
+                }
+            }
+        }, null);
+        BACKGROUND.add(task);
+        Thread t = new Thread(task, "directory-catalog-sync");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Wait for the background synchronizations started in this JVM that
+     * nobody has waited for yet. They finish within the deadlines of the
+     * Directory client.
+     *
+     * @return True if there were any to wait for.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    public static boolean awaitBackground() throws InterruptedIOException {
+        boolean waited = false;
+        Future<?> pending;
+        while ((pending = BACKGROUND.poll()) != null) {
+            waited = true;
+            try {
+                pending.get();
+            } catch (ExecutionException ex) {
+                // failures are logged by the synchronization itself
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the catalog refresh");
+            }
+        }
+        return waited;
+    }
+
+    private Result syncNow(final File file, final String version) throws IOException {
+        return CatalogCache.locked(file, new Callable<Result>() {
+            @Override
+            public Result call() throws IOException {
+                return syncLocked(file, version);
+            }
+        });
+    }
+
+    private Result syncLocked(File file, String version) throws IOException {
+        List<AddonEntry> local = CatalogCache.read(file);
+        List<AddonEntry> remote = cache.getClient().search(version, "", true);
+        Result result = local == null ? Result.full(remote) : merge(local, remote);
+        if (result.hasChanges()) {
+            CatalogCache.write(file, result.getCatalog());
+        } else {
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return result;
+    }
+
+    static Result merge(List<AddonEntry> local, List<AddonEntry> remote) {
+        Map<String, AddonEntry> previous = new HashMap<>();
+        for (AddonEntry e : local) {
+            previous.put(e.getKey(), e);
+        }
+        int added = 0;
+        int updated = 0;
+        for (AddonEntry e : remote) {
+            AddonEntry old = previous.remove(e.getKey());
+            if (old == null) {
+                added++;
+            } else if (!old.equals(e)) {
+                updated++;
+            }
+        }
+        int removed = previous.size();
+        boolean reordered = added + updated + removed == 0 && !local.equals(remote);
+        return new Result(remote, added, updated, removed, false, reordered);
+    }
+
+    /**
+     * Outcome of a synchronization.
+     */
+    public static class Result {
+
+        private final List<AddonEntry> catalog;
+        private final int added;
+        private final int updated;
+        private final int removed;
+        private final boolean full;
+        private final boolean reordered;
+
+        Result(List<AddonEntry> catalog, int added, int updated, int removed, boolean full, boolean reordered) {
+            this.catalog = catalog;
+            this.added = added;
+            this.updated = updated;
+            this.removed = removed;
+            this.full = full;
+            this.reordered = reordered;
+        }
+
+        static Result full(List<AddonEntry> catalog) {
+            return new Result(catalog, catalog.size(), 0, 0, true, false);
+        }
+
+        public List<AddonEntry> getCatalog() {
+            return catalog;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        /**
+         * True if there was no usable local snapshot to compare the
+         * downloaded catalog with.
+         *
+         * @return
+         */
+        public boolean isFull() {
+            return full;
+        }
+
+        public boolean hasChanges() {
+            return full || reordered || added + updated + removed > 0;
+        }
+    }
+}
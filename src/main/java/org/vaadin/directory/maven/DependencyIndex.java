@@ -0,0 +1,119 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Profile;
+import org.codehaus.mojo.versions.api.PomHelper;
+
+/**
+ * Hash index of the dependencies declared in a pom, by groupId:artifactId.
+ *
+ * Covers the project dependencies, the dependency management section and
+ * both of these in every profile.
+ */
+public class DependencyIndex {
+
+    private final Map<String, Dependency> dependencies = new HashMap<>();
+    private final Map<String, Dependency> managed = new HashMap<>();
+    private final Map<String, String> properties;
+
+    public DependencyIndex(Model pomModel) {
+        properties = PomUtils.properties(pomModel);
+        addAll(dependencies, pomModel.getDependencies());
+        addAll(managed, pomModel.getDependencyManagement());
+        if (pomModel.getProfiles() != null) {
+            for (Profile p : pomModel.getProfiles()) {
+                addAll(dependencies, p.getDependencies());
+                addAll(managed, p.getDependencyManagement());
+            }
+        }
+    }
+
+    /**
+     * Find a dependency of the project or of one of its profiles.
+     *
+     * @param groupId
+     * @param artifactId
+     * @return
+     */
+    public Dependency findDependency(String groupId, String artifactId) {
+        if (groupId == null || artifactId == null) {
+            return null;
+        }
+        return dependencies.get(key(groupId, artifactId));
+    }
+
+    /**
+     * Find a dependency management entry of the project or of one of its
+     * profiles.
+     *
+     * @param groupId
+     * @param artifactId
+     * @return
+     */
+    public Dependency findManagedDependency(String groupId, String artifactId) {
+        if (groupId == null || artifactId == null) {
+            return null;
+        }
+        return managed.get(key(groupId, artifactId));
+    }
+
+    /**
+     * The version of a dependency with the properties of the pom evaluated.
+     *
+     * @param dependency The dependency, or <code>null</code>.
+     * @return The version, or <code>null</code> if the dependency has none
+     * or it refers to a property the pom does not define.
+     */
+    public String getVersion(Dependency dependency) {
+        if (dependency == null || dependency.getVersion() == null) {
+            return null;
+        }
+        String version = PomHelper.evaluate(dependency.getVersion(), properties).trim();
+        return version.isEmpty() || version.contains("${") ? null : version;
+    }
+
+    static String key(String groupId, String artifactId) {
+        return groupId + ":" + artifactId;
+    }
+
+    private static void addAll(Map<String, Dependency> index, DependencyManagement dm) {
+        if (dm != null) {
+            addAll(index, dm.getDependencies());
+        }
+    }
+
+    private static void addAll(Map<String, Dependency> index, List<Dependency> deps) {
+        if (deps == null) {
+            return;
+        }
+        for (Dependency dep : deps) {
+            String key = key(dep.getGroupId(), dep.getArtifactId());
+            if (!index.containsKey(key)) {
+                index.put(key, dep);
+            }
+        }
+    }
+}
@@ -18,13 +18,9 @@ package org.vaadin.directory.maven;
  * under the License.
  */
 
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
-import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
-import static org.vaadin.directory.maven.DirectorySearchMojo.directorySearch;
 
 /**
  * Maven plugin API for Vaadin Directory.
@@ -32,23 +28,14 @@ import static org.vaadin.directory.maven.DirectorySearchMojo.directorySearch;
  * @author Sami Ekblad
  */
 @Mojo(name = "add")
-public class DirectoryAddMojo extends AbstractMojo {
-
-    @Parameter(property = "addon")
-    private String searchAddon;
-
-    @Parameter(property = "full", defaultValue = "false", readonly = true)
-    private boolean fullSearch;
-
-    @Parameter(property = "project", defaultValue = "${project}", required = true, readonly = true)
-    private MavenProject project;
+public class DirectoryAddMojo extends AbstractDirectoryMojo {
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (searchAddon == null) {
             throw new MojoFailureException("Missing search parameter.");
         }
-        directorySearch(project, searchAddon, true, fullSearch);
+        directorySearch(true);
 
     }
 }
@@ -0,0 +1,176 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Load test of the add-on search path.
+ *
+ * Runs the searches given with <code>addon</code> repeatedly and
+ * concurrently, the same way the search goal does but without printing,
+ * and reports latency percentiles and throughput. By default the Directory
+ * is replaced by a {@link StubDirectoryServer} serving the responses
+ * recorded in the local cache, so the test runs offline and repeatably.
+ * Searches use an empty cache of their own, so the first requests measure
+ * the remote path and the rest the configured cache mode.
+ */
+@Mojo(name = "benchmark")
+public class DirectoryBenchmarkMojo extends AbstractDirectoryMojo {
+
+    /**
+     * Total number of searches to run.
+     */
+    @Parameter(property = "directory.benchmark.requests", defaultValue = "200")
+    private int requests;
+
+    /**
+     * Number of searches running at the same time.
+     */
+    @Parameter(property = "directory.benchmark.concurrency", defaultValue = "8")
+    private int concurrency;
+
+    /**
+     * Serve searches from the recorded responses in the cache directory
+     * instead of the real Directory.
+     */
+    @Parameter(property = "directory.benchmark.stub", defaultValue = "true")
+    private boolean stub;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (searchAddon == null) {
+            throw new MojoFailureException("Missing search parameter.");
+        }
+        List<String> queries = splitQueries(searchAddon);
+        if (queries.isEmpty() || requests <= 0) {
+            throw new MojoFailureException("Nothing to search.");
+        }
+
+        StubDirectoryServer server = null;
+        File work = null;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        try {
+            DirectoryClient client = getDirectoryClient();
+            if (stub) {
+                server = new StubDirectoryServer(getCatalogCache());
+                server.start(0, concurrency);
+                client.setDirectoryUrl(server.getUrl());
+                getLog().info("Serving recorded responses from " + cacheDirectory + " at " + server.getUrl());
+            }
+            work = Files.createTempDirectory("directory-benchmark").toFile();
+            AddonSearch search = getAddonSearch(new CatalogCache(work, cacheTtl, client));
+            run(executor, search, getRanking(), getVaadinMajorVersion(), queries);
+            if (server != null) {
+                getLog().info("Stub requests: " + server.getRequestCount());
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Benchmark failed: " + ex.getMessage(), ex);
+        } finally {
+            executor.shutdownNow();
+            awaitBackgroundRefresh();
+            if (server != null) {
+                server.stop();
+            }
+            delete(work);
+        }
+    }
+
+    private void run(ExecutorService executor, final AddonSearch search, final AddonRanking ranking,
+            final String version, final List<String> queries) throws MojoExecutionException {
+        List<Future<Long>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            final String query = queries.get(i % queries.size());
+            futures.add(executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws IOException {
+                    long t = System.nanoTime();
+                    ranking.top(search.search(version, query, fullSearch), offset, limit);
+                    return System.nanoTime() - t;
+                }
+            }));
+        }
+
+        long[] latencies = new long[requests];
+        int completed = 0;
+        int failures = 0;
+        for (Future<Long> f : futures) {
+            try {
+                latencies[completed++] = f.get();
+            } catch (ExecutionException ex) {
+                completed--;
+                failures++;
+                getLog().debug("Search failed", ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted", ex);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        latencies = Arrays.copyOf(latencies, completed);
+        Arrays.sort(latencies);
+        getLog().info("Searches: " + completed + " ok, " + failures + " failed, concurrency " + concurrency);
+        if (completed > 0) {
+            getLog().info(String.format("Latency ms: p50 %.3f, p95 %.3f, p99 %.3f, max %.3f",
+                    millis(percentile(latencies, 0.50)), millis(percentile(latencies, 0.95)),
+                    millis(percentile(latencies, 0.99)), millis(latencies[completed - 1])));
+        }
+        getLog().info(String.format("Throughput: %.1f searches/s",
+                completed / (elapsed / (double) TimeUnit.SECONDS.toNanos(1))));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static void delete(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,300 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.vaadin.directory.api.Directory;
+
+/**
+ * Latency bounded access to the Directory API.
+ *
+ * Every call has a deadline of the connect and read timeouts. Connections
+ * to a mirror use these timeouts, while the connections the Directory API
+ * opens itself keep the JDK defaults; no JVM wide setting is changed. Failed
+ * or timed out calls are retried with jittered exponential backoff.
+ * Optionally a duplicate request is sent when a call is slower than the
+ * given percentile of recent calls, and whichever answers first is used.
+ *
+ * A call to the Directory API cannot be interrupted: cancelling a timed out
+ * or hedged call only abandons it, and it keeps running on a daemon thread,
+ * still loading the Directory, until the API returns. Hedging therefore
+ * adds requests to the Directory rather than replacing them.
+ */
+public class DirectoryClient {
+
+    private static final long BACKOFF_MILLIS = 200;
+
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    /**
+     * Latencies of recent successful calls in this JVM.
+     */
+    private static final LatencyHistory LATENCIES = new LatencyHistory(128);
+
+    /**
+     * Daemon threads, so that calls abandoned after their deadline do not
+     * keep the build running.
+     */
+    private static final ExecutorService CALLS = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "directory-client");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int retries;
+    private final double hedgePercentile;
+    private String directoryUrl;
+
+    /**
+     * Create a client with default settings and no hedging.
+     */
+    public DirectoryClient() {
+        this(5000, 30000, 2, 0);
+    }
+
+    /**
+     * Create a client.
+     *
+     * @param connectTimeout Connect timeout in milliseconds.
+     * @param readTimeout Read timeout in milliseconds.
+     * @param retries How many times a failed call is retried.
+     * @param hedgePercentile Send a duplicate request when a call takes
+     * longer than this percentile (0 - 1) of recent calls. Zero disables
+     * hedging.
+     */
+    public DirectoryClient(int connectTimeout, int readTimeout, int retries, double hedgePercentile) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.retries = Math.max(0, retries);
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public String getDirectoryUrl() {
+        return directoryUrl;
+    }
+
+    /**
+     * Use a Directory mirror, such as {@link StubDirectoryServer}, instead of
+     * the Directory API. The mirror answers <code>search</code> requests in
+     * the cache format.
+     *
+     * @param directoryUrl Base URL of the mirror, or <code>null</code> for
+     * the Directory API.
+     */
+    public void setDirectoryUrl(String directoryUrl) {
+        this.directoryUrl = directoryUrl;
+    }
+
+    /**
+     * Search the Directory.
+     *
+     * @param version Vaadin major version.
+     * @param query The search string.
+     * @param fullSearch Search also descriptions.
+     * @return
+     * @throws IOException if all attempts failed or timed out.
+     */
+    public List<AddonEntry> search(String version, String query, boolean fullSearch) throws IOException {
+        IOException failure = null;
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            if (attempt > 0) {
+                backoff(attempt);
+            }
+            try {
+                return attempt(version, query, fullSearch);
+            } catch (InterruptedIOException ex) {
+                throw ex;
+            } catch (IOException ex) {
+                failure = ex;
+                Logger.getLogger(DirectoryClient.class.getName()).log(Level.FINE,
+                        "Directory search attempt " + (attempt + 1) + " failed", ex);
+            }
+        }
+        throw failure;
+    }
+
+    private List<AddonEntry> attempt(String version, String query, boolean fullSearch) throws IOException {
+        Callable<List<AddonEntry>> call = newCall(version, query, fullSearch);
+        CompletionService<List<AddonEntry>> completion = new ExecutorCompletionService<>(CALLS);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos((long) connectTimeout + readTimeout);
+        long hedgeAt = hedgePercentile > 0 ? LATENCIES.percentile(hedgePercentile) : -1;
+        Future<List<AddonEntry>> primary = completion.submit(call);
+        Future<List<AddonEntry>> hedge = null;
+        int pending = 1;
+        ExecutionException failure = null;
+        try {
+            while (pending > 0) {
+                long wait = deadline - System.nanoTime();
+                if (hedge == null && hedgeAt >= 0) {
+                    wait = Math.min(wait, start + TimeUnit.MILLISECONDS.toNanos(hedgeAt) - System.nanoTime());
+                }
+                Future<List<AddonEntry>> done = completion.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (System.nanoTime() - deadline >= 0) {
+                        throw new IOException("Directory search timed out after "
+                                + (connectTimeout + readTimeout) + " ms");
+                    }
+                    hedge = completion.submit(call);
+                    pending++;
+                    continue;
+                }
+                pending--;
+                try {
+                    List<AddonEntry> result = done.get();
+                    LATENCIES.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return result;
+                } catch (ExecutionException ex) {
+                    failure = ex;
+                }
+            }
+            Throwable cause = failure.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while searching the Directory");
+        } finally {
+            // stops a mirror call, a Directory API call runs to the end
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The actual remote call.
+     *
+     * @param version
+     * @param query
+     * @param fullSearch
+     * @return
+     */
+    protected Callable<List<AddonEntry>> newCall(final String version, final String query,
+            final boolean fullSearch) {
+        if (directoryUrl != null) {
+            return new Callable<List<AddonEntry>>() {
+                @Override
+                public List<AddonEntry> call() throws IOException {
+                    return searchMirror(version, query, fullSearch);
+                }
+            };
+        }
+        return new Callable<List<AddonEntry>>() {
+            @Override
+            public List<AddonEntry> call() {
+                return AddonEntry.fromAll(Directory.search(version, query, fullSearch));
+            }
+        };
+    }
+
+    private List<AddonEntry> searchMirror(String version, String query, boolean fullSearch) throws IOException {
+        String base = directoryUrl.endsWith("/") ? directoryUrl : directoryUrl + "/";
+        URL url = new URL(base + "search?version=" + URLEncoder.encode(version, "UTF-8")
+                + "&full=" + fullSearch + "&q=" + URLEncoder.encode(query, "UTF-8"));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Directory mirror answered " + connection.getResponseCode() + " for " + url);
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()))) {
+                List<AddonEntry> result = CatalogCache.readEntries(in);
+                if (result == null) {
+                    throw new IOException("Unsupported response format from " + url);
+                }
+                return result;
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void backoff(int attempt) throws InterruptedIOException {
+        long max = Math.min(MAX_BACKOFF_MILLIS, BACKOFF_MILLIS << (attempt - 1));
+        try {
+            // equal jitter: half of the exponential delay plus a random part of
+            // the other half
+            Thread.sleep(max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retrying the Directory search");
+        }
+    }
+
+    /**
+     * Fixed size ring buffer of call latencies.
+     */
+    static class LatencyHistory {
+
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        LatencyHistory(int size) {
+            samples = new long[size];
+        }
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * The latency at the given percentile, or -1 if there is not enough
+         * history to tell.
+         */
+        synchronized long percentile(double p) {
+            if (count < 10) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(Math.min(1, p) * count) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+}
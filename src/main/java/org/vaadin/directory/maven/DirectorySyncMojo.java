@@ -0,0 +1,57 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Synchronize the local add-on catalog snapshot with the Vaadin Directory.
+ *
+ * The Directory API has no query for the add-ons changed since the last
+ * synchronization, so the whole catalog is downloaded every time. It is
+ * compared with the local snapshot to report what changed, and the snapshot
+ * is only rewritten if something did.
+ */
+@Mojo(name = "sync", requiresProject = false)
+public class DirectorySyncMojo extends AbstractDirectoryMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (offline) {
+            throw new MojoFailureException("Cannot synchronize the add-on catalog offline.");
+        }
+        String version = getVaadinMajorVersion();
+        try {
+            CatalogSync.Result result = new CatalogSync(getCatalogCache()).sync(version);
+            if (result.isFull()) {
+                getLog().info("Downloaded " + result.getCatalog().size() + " add-ons for Vaadin " + version);
+            } else {
+                getLog().info("Synchronized add-ons for Vaadin " + version + ": "
+                        + result.getAdded() + " added, "
+                        + result.getUpdated() + " updated, "
+                        + result.getRemoved() + " removed");
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Catalog synchronization failed: " + ex.getMessage(), ex);
+        }
+    }
+}
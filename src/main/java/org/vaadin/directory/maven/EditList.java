@@ -0,0 +1,108 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import org.codehaus.mojo.versions.rewriting.EditRecorder;
+
+/**
+ * The edits made to a document, as ranges of the original text with their
+ * replacements.
+ *
+ * Edits are kept sorted by position. An edit overlapping or touching an
+ * earlier one is merged with it, so the ranges never overlap.
+ */
+public class EditList implements EditRecorder {
+
+    private final List<Edit> edits = new ArrayList<>();
+
+    @Override
+    public void edit(int start, int end, String replacement) {
+        // skip the edits ending before this one, tracking how much they
+        // moved the following text
+        int shift = 0;
+        int first = 0;
+        while (first < edits.size() && edits.get(first).start + shift + edits.get(first).text.length() < start) {
+            shift += edits.get(first).delta();
+            first++;
+        }
+        int last = first;
+        int endShift = shift;
+        while (last < edits.size() && edits.get(last).start + endShift <= end) {
+            endShift += edits.get(last).delta();
+            last++;
+        }
+        if (first == last) {
+            edits.add(first, new Edit(start - shift, end - shift, replacement));
+            return;
+        }
+
+        // merge with the edits overlapping or touching this one
+        Edit a = edits.get(first);
+        Edit b = edits.get(last - 1);
+        int aStart = a.start + shift;
+        int bStart = b.start + endShift - b.delta();
+        int bEnd = bStart + b.text.length();
+        int origStart = start < aStart ? start - shift : a.start;
+        int origEnd = end >= bEnd ? end - endShift : b.end;
+        String prefix = start > aStart ? a.text.substring(0, start - aStart) : "";
+        String suffix = end < bEnd ? b.text.substring(end - bStart) : "";
+        edits.subList(first, last).clear();
+        edits.add(first, new Edit(origStart, origEnd, prefix + replacement + suffix));
+    }
+
+    /**
+     * True if any edits were recorded.
+     *
+     * @return
+     */
+    public boolean hasChanges() {
+        return !edits.isEmpty();
+    }
+
+    /**
+     * The edits in order of position.
+     *
+     * @return
+     */
+    List<Edit> getEdits() {
+        return edits;
+    }
+
+    /**
+     * Replacement of an original range.
+     */
+    static class Edit {
+
+        final int start;
+        final int end;
+        final String text;
+
+        Edit(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
+        int delta() {
+            return text.length() - (end - start);
+        }
+    }
+}
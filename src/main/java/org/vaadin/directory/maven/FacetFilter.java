@@ -0,0 +1,137 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * License and rating restrictions on search hits.
+ *
+ * License names are normalized before they are compared: case,
+ * punctuation and the words "license" and "version" are ignored, so
+ * <code>Apache-2.0</code> matches <code>Apache License, Version 2.0</code>.
+ * The normalized names must then be equal, so <code>GPL-3.0</code> does not
+ * match <code>LGPL-3.0</code> or <code>AGPL-3.0</code>.
+ *
+ * A license ending with <code>*</code> matches every license whose
+ * normalized name starts with it: <code>apache*</code> matches all Apache
+ * licenses, and <code>GPL*</code> all GPL versions but not LGPL or AGPL.
+ */
+public class FacetFilter {
+
+    private final String license;
+    private final boolean prefix;
+    private final double minRating;
+
+    /**
+     * Create a filter.
+     *
+     * @param license Required license, or <code>null</code> for any. A
+     * trailing <code>*</code> matches all licenses starting with it.
+     * @param minRating Minimum average rating, zero for any.
+     */
+    public FacetFilter(String license, double minRating) {
+        this.license = license == null || normalizeLicense(license).isEmpty() ? null : normalizeLicense(license);
+        this.prefix = this.license != null && license.trim().endsWith("*");
+        this.minRating = minRating;
+    }
+
+    /**
+     * The normalized license to match, or <code>null</code> for any.
+     *
+     * @return
+     */
+    public String getLicense() {
+        return license;
+    }
+
+    public double getMinRating() {
+        return minRating;
+    }
+
+    /**
+     * True if the filter lets everything through.
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return license == null && minRating <= 0;
+    }
+
+    public boolean matches(AddonEntry entry) {
+        if (entry.getAvgRating() < minRating) {
+            return false;
+        }
+        if (license == null) {
+            return true;
+        }
+        for (String l : entry.getLicenses()) {
+            if (licenseMatches(normalizeLicense(l))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if an add-on with the given normalized license passes the filter.
+     *
+     * @param normalizedLicense
+     * @return
+     */
+    boolean licenseMatches(String normalizedLicense) {
+        if (license == null) {
+            return true;
+        }
+        return prefix ? normalizedLicense.startsWith(license) : normalizedLicense.equals(license);
+    }
+
+    /**
+     * The entries passing the filter, in order.
+     *
+     * @param entries
+     * @return
+     */
+    public List<AddonEntry> filter(List<AddonEntry> entries) {
+        if (isEmpty()) {
+            return entries;
+        }
+        List<AddonEntry> result = new ArrayList<>();
+        for (AddonEntry e : entries) {
+            if (matches(e)) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    static String normalizeLicense(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String token : CatalogIndex.tokenize(name)) {
+            if (!token.equals("license") && !token.equals("licence") && !token.equals("version")) {
+                sb.append(token);
+            }
+        }
+        return sb.toString();
+    }
+}
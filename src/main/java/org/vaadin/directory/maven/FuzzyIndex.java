@@ -0,0 +1,262 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Typo tolerant q-gram index over add-on names and artifact ids.
+ *
+ * Candidates are the add-ons sharing enough q-grams with the query to be
+ * within the allowed edit distance (q-gram lemma): each edit destroys at
+ * most q of the grams of the query. Trigrams are used where they leave a
+ * positive number of grams to share, and bigrams for shorter queries. If
+ * even bigrams leave none, the allowed distance is lowered until they do,
+ * so a search never checks every add-on. Candidates too short to contain
+ * the query within the distance are skipped, and the rest are checked with
+ * a bounded approximate substring edit distance. The best matches are
+ * collected in a fixed size heap.
+ */
+public class FuzzyIndex {
+
+    private static final int[] NO_DOCS = new int[0];
+
+    private final List<AddonEntry> entries;
+    private final String[] names;
+    private final String[] artifactIds;
+    private final int[] maxLengths;
+    private final Map<String, int[]> grams = new HashMap<>();
+
+    public FuzzyIndex(List<AddonEntry> entries) {
+        this.entries = entries;
+        names = new String[entries.size()];
+        artifactIds = new String[entries.size()];
+        maxLengths = new int[entries.size()];
+        Map<String, List<Integer>> building = new HashMap<>();
+        for (int doc = 0; doc < entries.size(); doc++) {
+            names[doc] = normalize(entries.get(doc).getName());
+            artifactIds[doc] = normalize(entries.get(doc).getArtifactId());
+            maxLengths[doc] = Math.max(names[doc].length(), artifactIds[doc].length());
+            Set<String> docGrams = new HashSet<>();
+            for (int size = 1; size <= 3; size++) {
+                docGrams.addAll(grams(names[doc], size));
+                docGrams.addAll(grams(artifactIds[doc], size));
+            }
+            for (String g : docGrams) {
+                List<Integer> docs = building.get(g);
+                if (docs == null) {
+                    docs = new ArrayList<>();
+                    building.put(g, docs);
+                }
+                docs.add(doc);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> g : building.entrySet()) {
+            int[] docs = new int[g.getValue().size()];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = g.getValue().get(i);
+            }
+            grams.put(g.getKey(), docs);
+        }
+    }
+
+    /**
+     * Find the add-ons whose name or artifact id approximately contains the
+     * query.
+     *
+     * @param query The search string.
+     * @param maxResults How many results to return at most.
+     * @return The best matches, closest first.
+     */
+    public List<AddonEntry> search(String query, int maxResults) {
+        return search(query, maxResults, null);
+    }
+
+    /**
+     * Find the allowed add-ons whose name or artifact id approximately
+     * contains the query.
+     *
+     * @param query The search string.
+     * @param maxResults How many results to return at most.
+     * @param allowed Document numbers of the add-ons to consider, or
+     * <code>null</code> for all.
+     * @return The best matches, closest first.
+     */
+    public List<AddonEntry> search(String query, int maxResults, BitSet allowed) {
+        String q = normalize(query);
+        if (q.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+        int maxDistance = maxDistance(q.length());
+
+        // every edit destroys at most size grams of the query, so a match
+        // shares all but size * maxDistance of them
+        int size = 3;
+        Set<String> queryGrams = grams(q, size);
+        if (queryGrams.size() - size * maxDistance < 1) {
+            size = Math.min(2, q.length());
+            queryGrams = grams(q, size);
+            maxDistance = Math.min(maxDistance, (queryGrams.size() - 1) / size);
+        }
+        int threshold = queryGrams.size() - size * maxDistance;
+        int[] shared = new int[entries.size()];
+        int[] candidates = new int[entries.size()];
+        int count = 0;
+        for (String g : queryGrams) {
+            for (int doc : lookup(g)) {
+                if (++shared[doc] == threshold) {
+                    candidates[count++] = doc;
+                }
+            }
+        }
+        candidates = Arrays.copyOf(candidates, count);
+        // a substring within the distance is at least this long
+        int minLength = q.length() - maxDistance;
+
+        PriorityQueue<Match> best = new PriorityQueue<>(maxResults, Collections.reverseOrder());
+        for (int doc : candidates) {
+            if (allowed != null && !allowed.get(doc) || maxLengths[doc] < minLength) {
+                continue;
+            }
+            int distance = Math.min(
+                    substringDistance(q, names[doc], maxDistance),
+                    substringDistance(q, artifactIds[doc], maxDistance));
+            if (distance > maxDistance) {
+                continue;
+            }
+            Match m = new Match(doc, distance, Math.abs(names[doc].length() - q.length()));
+            if (best.size() < maxResults) {
+                best.add(m);
+            } else if (m.compareTo(best.peek()) < 0) {
+                best.poll();
+                best.add(m);
+            }
+        }
+
+        Match[] sorted = best.toArray(new Match[best.size()]);
+        Arrays.sort(sorted);
+        List<AddonEntry> result = new ArrayList<>(sorted.length);
+        for (Match m : sorted) {
+            result.add(entries.get(m.doc));
+        }
+        return result;
+    }
+
+    private int[] lookup(String gram) {
+        int[] docs = grams.get(gram);
+        return docs == null ? NO_DOCS : docs;
+    }
+
+    private static int maxDistance(int length) {
+        if (length <= 4) {
+            return 1;
+        }
+        return length <= 8 ? 2 : 3;
+    }
+
+    /**
+     * Edit distance between the pattern and the closest substring of the
+     * text, or <code>max + 1</code> if it is larger than max.
+     *
+     * @param pattern
+     * @param text
+     * @param max
+     * @return
+     */
+    static int substringDistance(String pattern, String text, int max) {
+        int m = pattern.length();
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            prev[i] = i;
+        }
+        int best = prev[m];
+        for (int j = 1; j <= text.length(); j++) {
+            cur[0] = 0;
+            char c = text.charAt(j - 1);
+            for (int i = 1; i <= m; i++) {
+                int cost = pattern.charAt(i - 1) == c ? 0 : 1;
+                cur[i] = Math.min(Math.min(cur[i - 1] + 1, prev[i] + 1), prev[i - 1] + cost);
+            }
+            best = Math.min(best, cur[m]);
+            if (best == 0) {
+                return 0;
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return best > max ? max + 1 : best;
+    }
+
+    static String normalize(String s) {
+        if (s == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Set<String> grams(String s, int size) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + size <= s.length(); i++) {
+            result.add(s.substring(i, i + size));
+        }
+        return result;
+    }
+
+    private static class Match implements Comparable<Match> {
+
+        final int doc;
+        final int distance;
+        final int lengthDifference;
+
+        Match(int doc, int distance, int lengthDifference) {
+            this.doc = doc;
+            this.distance = distance;
+            this.lengthDifference = lengthDifference;
+        }
+
+        @Override
+        public int compareTo(Match o) {
+            if (distance != o.distance) {
+                return Integer.compare(distance, o.distance);
+            }
+            if (lengthDifference != o.lengthDifference) {
+                return Integer.compare(lengthDifference, o.lengthDifference);
+            }
+            return Integer.compare(doc, o.doc);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers searches from a local index of the catalog snapshot.
+ */
+public class IndexedSearch implements AddonSearch {
+
+    private final CatalogCache cache;
+    private final boolean download;
+    private final int fuzzyResults;
+    private boolean backgroundRefresh;
+    private FacetFilter filter;
+    private final Map<String, CatalogIndex> indexes = new HashMap<>();
+
+    /**
+     * Create an indexed search.
+     *
+     * @param cache The cache holding the catalog snapshots.
+     * @param download Download or revalidate the snapshot when it is missing
+     * or expired. If false, the search never accesses the network.
+     */
+    public IndexedSearch(CatalogCache cache, boolean download) {
+        this(cache, download, 0);
+    }
+
+    /**
+     * Create an indexed search.
+     *
+     * @param cache The cache holding the catalog snapshots.
+     * @param download Download or revalidate the snapshot when it is missing
+     * or expired. If false, the search never accesses the network.
+     * @param fuzzyResults If positive, match names typo tolerantly and return
+     * at most this many closest matches.
+     */
+    public IndexedSearch(CatalogCache cache, boolean download, int fuzzyResults) {
+        this.cache = cache;
+        this.download = download;
+        this.fuzzyResults = fuzzyResults;
+    }
+
+    /**
+     * Keep using an expired snapshot and refresh it on a background thread,
+     * instead of revalidating it before the search.
+     *
+     * @param backgroundRefresh
+     */
+    public void setBackgroundRefresh(boolean backgroundRefresh) {
+        this.backgroundRefresh = backgroundRefresh;
+    }
+
+    /**
+     * Only return add-ons passing the license and rating filter. The filter
+     * is applied to the catalog facets before matching.
+     *
+     * @param filter
+     */
+    public void setFilter(FacetFilter filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public List<AddonEntry> search(String version, String query, boolean fullSearch) throws IOException {
+        CatalogIndex index = getIndex(version);
+        BitSet allowed = filter == null || filter.isEmpty() ? null : index.getFacets().select(filter);
+        if (fuzzyResults > 0) {
+            return index.getFuzzyIndex().search(query, fuzzyResults, allowed);
+        }
+        if (!fullSearch && index.getEntries() instanceof BinaryCatalog) {
+            // name searches run directly on the mapped name index
+            return ((BinaryCatalog) index.getEntries()).searchNames(query, allowed);
+        }
+        return index.search(query, fullSearch, allowed);
+    }
+
+    /**
+     * The index of the catalog snapshot of a Vaadin version.
+     *
+     * @param version
+     * @return
+     * @throws IOException if there is no snapshot available.
+     */
+    public synchronized CatalogIndex getIndex(String version) throws IOException {
+        CatalogIndex index = indexes.get(version);
+        if (index == null) {
+            List<AddonEntry> catalog = null;
+            if (download && backgroundRefresh && !cache.isCatalogFresh(version)) {
+                catalog = cache.catalog(version, false);
+                if (catalog != null) {
+                    new CatalogSync(cache).syncInBackground(version);
+                }
+            }
+            if (catalog == null) {
+                catalog = cache.catalog(version, download);
+            }
+            if (catalog == null) {
+                throw new IOException("No local add-on catalog for Vaadin " + version
+                        + " in " + cache.getDirectory() + ". Run once online with -Ddirectory.localIndex=true to download it.");
+            }
+            index = new CatalogIndex(catalog);
+            indexes.put(version, index);
+        }
+        return index;
+    }
+}
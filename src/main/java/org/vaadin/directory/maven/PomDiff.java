@@ -0,0 +1,259 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unified diff of the edits made to a pom, built from the edited ranges.
+ *
+ * The diff only looks at the lines around the edited ranges, so the edited
+ * document is never serialized or compared with the original.
+ */
+public class PomDiff extends EditList {
+
+    private static final int CONTEXT = 3;
+
+    private static final String NO_NEWLINE = "\\ No newline at end of file\n";
+
+    private final String original;
+    private int[] lineStarts;
+
+    /**
+     * Create a diff of a document.
+     *
+     * @param original The text before any edits.
+     */
+    public PomDiff(String original) {
+        this.original = original;
+    }
+
+    /**
+     * Render the edits as a unified diff.
+     *
+     * @param oldName Name of the original file in the header.
+     * @param newName Name of the edited file in the header.
+     * @return The diff, or an empty string if nothing was edited.
+     */
+    public String render(String oldName, String newName) {
+        List<Change> changes = getChanges();
+        if (changes.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- ").append(oldName).append('\n');
+        sb.append("+++ ").append(newName).append('\n');
+        int lineDelta = 0;
+        int i = 0;
+        while (i < changes.size()) {
+            // a hunk covers the changes whose context lines overlap
+            int j = i + 1;
+            while (j < changes.size() && changes.get(j).from - changes.get(j - 1).to <= 2 * CONTEXT) {
+                j++;
+            }
+            int from = Math.max(0, changes.get(i).from - CONTEXT);
+            int to = Math.min(lineCount(), changes.get(j - 1).to + CONTEXT);
+            StringBuilder body = new StringBuilder();
+            int newLines = 0;
+            int line = from;
+            for (int c = i; c < j; c++) {
+                Change change = changes.get(c);
+                for (; line < change.from; line++) {
+                    appendLine(body, ' ', line);
+                    newLines++;
+                }
+                for (; line < change.to; line++) {
+                    appendLine(body, '-', line);
+                }
+                for (int l = 0; l < change.lines.size(); l++) {
+                    body.append('+').append(change.lines.get(l)).append('\n');
+                    if (l == change.lines.size() - 1 && change.noNewlineAtEnd) {
+                        body.append(NO_NEWLINE);
+                    }
+                    newLines++;
+                }
+            }
+            for (; line < to; line++) {
+                appendLine(body, ' ', line);
+                newLines++;
+            }
+            int newFrom = from + lineDelta;
+            sb.append("@@ -").append(range(from, to - from)).append(" +").append(range(newFrom, newLines))
+                    .append(" @@\n").append(body);
+            for (int c = i; c < j; c++) {
+                lineDelta += changes.get(c).lines.size() - (changes.get(c).to - changes.get(c).from);
+            }
+            i = j;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The edits as replaced line ranges, merging edits on the same or
+     * adjacent lines.
+     */
+    private List<Change> getChanges() {
+        List<Edit> edits = getEdits();
+        List<Change> changes = new ArrayList<>();
+        int e = 0;
+        while (e < edits.size()) {
+            // the line where an edit ends is also affected, as the edit may
+            // have removed the line break before it
+            int from = lineOf(edits.get(e).start);
+            int to = lineOf(edits.get(e).end) + 1;
+            int f = e + 1;
+            while (f < edits.size() && lineOf(edits.get(f).start) < to) {
+                to = Math.max(to, lineOf(edits.get(f).end) + 1);
+                f++;
+            }
+            int start = lineStart(from);
+            int end = lineStart(to);
+            StringBuilder text = new StringBuilder();
+            int pos = start;
+            for (int k = e; k < f; k++) {
+                text.append(original, pos, edits.get(k).start).append(edits.get(k).text);
+                pos = edits.get(k).end;
+            }
+            text.append(original, pos, end);
+            // an edit replacing an end tag with new lines and the same end
+            // tag only adds the new lines
+            List<String> lines = splitLines(text.toString());
+            while (from < to && !lines.isEmpty() && lines.get(0).equals(rawLine(from))) {
+                lines.remove(0);
+                from++;
+            }
+            while (from < to && !lines.isEmpty() && lines.get(lines.size() - 1).equals(rawLine(to - 1))) {
+                lines.remove(lines.size() - 1);
+                to--;
+            }
+            if (from < to || !lines.isEmpty()) {
+                boolean noNewlineAtEnd = to == lineCount() && !lines.isEmpty()
+                        && !lines.get(lines.size() - 1).endsWith("\n");
+                List<String> stripped = new ArrayList<>(lines.size());
+                for (String line : lines) {
+                    stripped.add(stripNewline(line));
+                }
+                changes.add(new Change(from, to, stripped, noNewlineAtEnd));
+            }
+            e = f;
+        }
+        return changes;
+    }
+
+    private int[] getLineStarts() {
+        if (lineStarts == null) {
+            int[] starts = new int[16];
+            int count = 1;
+            for (int i = 0; i < original.length(); i++) {
+                if (original.charAt(i) == '\n' && i + 1 < original.length()) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            lineStarts = Arrays.copyOf(starts, count);
+        }
+        return lineStarts;
+    }
+
+    private int lineCount() {
+        return original.isEmpty() ? 0 : getLineStarts().length;
+    }
+
+    private int lineOf(int offset) {
+        int i = Arrays.binarySearch(getLineStarts(), offset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    private int lineStart(int line) {
+        return line < getLineStarts().length ? getLineStarts()[line] : original.length();
+    }
+
+    private void appendLine(StringBuilder body, char prefix, int line) {
+        body.append(prefix).append(line(line)).append('\n');
+        if (line == lineCount() - 1 && !original.endsWith("\n")) {
+            body.append(NO_NEWLINE);
+        }
+    }
+
+    private String line(int line) {
+        return stripNewline(rawLine(line));
+    }
+
+    /**
+     * An original line with its line break.
+     */
+    private String rawLine(int line) {
+        return original.substring(lineStart(line), lineStart(line + 1));
+    }
+
+    /**
+     * The lines of a text with their line breaks.
+     */
+    private static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    private static String stripNewline(String line) {
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    private static String range(int from, int count) {
+        return count == 0 ? from + ",0" : (from + 1) + "," + count;
+    }
+
+    /**
+     * Replacement of the original lines from-to.
+     */
+    private static class Change {
+
+        final int from;
+        final int to;
+        final List<String> lines;
+        final boolean noNewlineAtEnd;
+
+        Change(int from, int to, List<String> lines, boolean noNewlineAtEnd) {
+            this.from = from;
+            this.to = to;
+            this.lines = lines;
+            this.noNewlineAtEnd = noNewlineAtEnd;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import org.apache.maven.model.Dependency;
+import org.codehaus.mojo.versions.rewriting.EditRecorder;
+import org.codehaus.mojo.versions.rewriting.ModifiedPomXMLEventReader;
+
+/**
+ * Properties, managed dependencies and dependencies to add to one pom file.
+ *
+ * All of them are inserted in a single scan of the pom. Elements are added
+ * at the end of the existing properties, dependencyManagement and
+ * dependencies sections, and missing sections are created at the end of
+ * the project.
+ */
+public class PomEdit {
+
+    private static final String DEFAULT_INDENT = "    ";
+
+    private final File file;
+    private final Map<String, String> properties = new LinkedHashMap<>();
+    private final List<Dependency> managedDependencies = new ArrayList<>();
+    private final List<Dependency> dependencies = new ArrayList<>();
+
+    public PomEdit(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void addProperty(String name, String value) {
+        properties.put(name, value);
+    }
+
+    public void addManagedDependency(Dependency dependency) {
+        managedDependencies.add(dependency);
+    }
+
+    /**
+     * Add a dependency. A dependency without version is added without a
+     * version element.
+     *
+     * @param dependency
+     */
+    public void addDependency(Dependency dependency) {
+        dependencies.add(dependency);
+    }
+
+    public boolean isEmpty() {
+        return properties.isEmpty() && managedDependencies.isEmpty() && dependencies.isEmpty();
+    }
+
+    /**
+     * Stage the changed pom in a transaction, to be written when the
+     * transaction commits if the pom is not changed before that. The whole
+     * pom is staged, encoded the way the original is.
+     *
+     * @param transaction
+     * @param timings
+     * @throws IOException if the pom could not be read or parsed.
+     */
+    public void stage(PomTransaction transaction, Timings timings) throws IOException {
+        PomFile pomFile = PomFile.read(file, timings);
+        ModifiedPomXMLEventReader pom = edit(pomFile, timings, null);
+        transaction.stage(pomFile, pomFile.encode(pom.asStringBuilder()));
+    }
+
+    /**
+     * Show the changes as a unified diff without writing the pom file.
+     *
+     * @param timings
+     * @return The diff, or an empty string if there are no changes.
+     * @throws IOException if the pom could not be read or parsed.
+     */
+    public String preview(Timings timings) throws IOException {
+        PomFile pomFile = PomFile.read(file, timings);
+        PomDiff diff = new PomDiff(pomFile.getText());
+        edit(pomFile, timings, diff);
+        return diff.render(file.getPath(), file.getPath());
+    }
+
+    /**
+     * Make the changes to the text of a pom in memory.
+     *
+     * @param pomFile
+     * @param timings
+     * @param recorder Notified of each edit, or <code>null</code>.
+     * @return The edited pom.
+     * @throws IOException if the pom could not be parsed.
+     */
+    ModifiedPomXMLEventReader edit(PomFile pomFile, Timings timings, EditRecorder recorder) throws IOException {
+        ModifiedPomXMLEventReader pom = PomUtils.newModifiedPomXER(pomFile.edit());
+        if (pom == null) {
+            throw new IOException("Could not parse " + file);
+        }
+        pom.setEditRecorder(recorder);
+        long start = timings.start();
+        try {
+            insert(pom, timings);
+        } catch (XMLStreamException ex) {
+            throw new IOException("Could not parse " + file + ": " + ex.getMessage(), ex);
+        } finally {
+            timings.stop(Timings.SCAN_POM, start);
+        }
+        return pom;
+    }
+
+    /**
+     * Make the changes in one scan of a pom.
+     *
+     * @param pom
+     * @param timings
+     * @throws XMLStreamException if the pom could not be parsed.
+     */
+    void insert(ModifiedPomXMLEventReader pom, Timings timings) throws XMLStreamException {
+        Stack<String> stack = new Stack<>();
+        String path = "";
+        String indent = "";
+        String startIndent = "";
+        String unit = null;
+        boolean hasProperties = false;
+        boolean hasManagement = false;
+        boolean hasManagedDependencies = false;
+        boolean hasDependencies = false;
+
+        String newline = lineSeparator(pom.asCharSequence());
+        int rewinds = pom.getRewindCount();
+        pom.rewind();
+
+        int events = 0;
+        try {
+            while (pom.hasNext()) {
+                XMLEvent event = pom.nextEvent();
+                events++;
+                if (event.isCharacters()) {
+                    String text = event.asCharacters().getData();
+                    int nl = text.lastIndexOf('\n');
+                    indent = event.asCharacters().isWhiteSpace() && nl >= 0 ? text.substring(nl + 1) : "";
+                    continue;
+                }
+                if (event.isStartElement()) {
+                    if (unit == null && stack.size() == 1) {
+                        // indent of the first project child
+                        unit = indent.isEmpty() ? DEFAULT_INDENT : indent;
+                    }
+                    startIndent = indent;
+                    stack.push(path);
+                    path = path + "/" + event.asStartElement().getName().getLocalPart();
+                } else if (event.isEndElement()) {
+                    String step = unit == null ? DEFAULT_INDENT : unit;
+                    List<String> lines = new ArrayList<>();
+                    switch (path) {
+                        case "/project/properties":
+                            hasProperties = true;
+                            addProperties(lines, "");
+                            break;
+                        case "/project/dependencyManagement/dependencies":
+                            hasManagedDependencies = true;
+                            addDependencies(lines, "", managedDependencies);
+                            break;
+                        case "/project/dependencyManagement":
+                            hasManagement = true;
+                            if (!hasManagedDependencies && !managedDependencies.isEmpty()) {
+                                lines.add("<dependencies>");
+                                addDependencies(lines, step, managedDependencies);
+                                lines.add("</dependencies>");
+                            }
+                            break;
+                        case "/project/dependencies":
+                            hasDependencies = true;
+                            addDependencies(lines, "", dependencies);
+                            break;
+                        case "/project":
+                            if (!hasProperties && !properties.isEmpty()) {
+                                lines.add("<properties>");
+                                addProperties(lines, step);
+                                lines.add("</properties>");
+                            }
+                            if (!hasManagement && !managedDependencies.isEmpty()) {
+                                lines.add("<dependencyManagement>");
+                                lines.add(step + "<dependencies>");
+                                addDependencies(lines, step + step, managedDependencies);
+                                lines.add(step + "</dependencies>");
+                                lines.add("</dependencyManagement>");
+                            }
+                            if (!hasDependencies && !dependencies.isEmpty()) {
+                                lines.add("<dependencies>");
+                                addDependencies(lines, step, dependencies);
+                                lines.add("</dependencies>");
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    if (!lines.isEmpty()) {
+                        // the end tag is preceded by its own indentation, so
+                        // each line is indented one level deeper than it
+                        pom.mark(0);
+                        String tag = pom.getMarkVerbatim(0);
+                        StringBuilder sb = new StringBuilder();
+                        if (tag.endsWith("/>")) {
+                            // an empty element is opened to hold the lines,
+                            // indented one level deeper than its start tag
+                            sb.append(tag.substring(0, tag.length() - 2).trim()).append('>');
+                            for (String line : lines) {
+                                sb.append(newline).append(startIndent).append(step).append(line);
+                            }
+                            sb.append(newline).append(startIndent).append("</")
+                                    .append(qualifiedName(event.asEndElement().getName())).append('>');
+                        } else {
+                            for (String line : lines) {
+                                sb.append(step).append(line).append(newline).append(indent);
+                            }
+                            sb.append(tag);
+                        }
+                        pom.replaceMark(0, sb.toString());
+                        pom.clearMark(0);
+                    }
+                    path = stack.pop();
+                }
+                indent = "";
+            }
+        } finally {
+            timings.count(Timings.EVENTS_SCANNED, events);
+            timings.count(Timings.REWINDS, pom.getRewindCount() - rewinds);
+        }
+    }
+
+    /**
+     * The line separator of a pom, so that added lines match the existing
+     * ones.
+     *
+     * @param text
+     * @return <code>"\r\n"</code> if the first line ends with it, otherwise
+     *         <code>"\n"</code>.
+     */
+    static String lineSeparator(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                return i > 0 && text.charAt(i - 1) == '\r' ? "\r\n" : "\n";
+            }
+        }
+        return "\n";
+    }
+
+    private static String qualifiedName(QName name) {
+        return name.getPrefix().isEmpty() ? name.getLocalPart() : name.getPrefix() + ":" + name.getLocalPart();
+    }
+
+    private void addProperties(List<String> lines, String prefix) {
+        for (Map.Entry<String, String> p : properties.entrySet()) {
+            lines.add(prefix + "<" + p.getKey() + ">" + p.getValue() + "</" + p.getKey() + ">");
+        }
+    }
+
+    private static void addDependencies(List<String> lines, String prefix, List<Dependency> dependencies) {
+        for (Dependency dep : dependencies) {
+            lines.add(prefix + PomUtils.dependencyElement(dep));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.XmlStreamReader;
+
+/**
+ * The text of a pom file together with the encoding it was stored in.
+ *
+ * Edits are written back by splicing: the unchanged byte ranges of the
+ * original file are copied as they are, and only the replacement texts are
+ * encoded, in the original encoding. Large files are not decoded and
+ * encoded again as a whole, and their bytes outside the edits stay
+ * exactly the same.
+ */
+public class PomFile {
+
+    private final File file;
+    private final Charset charset;
+    private final byte[] bom;
+    private final String text;
+    private final long length;
+    private final byte[] hash;
+
+    private PomFile(File file, Charset charset, byte[] bom, String text, byte[] content) {
+        this.file = file;
+        this.charset = charset;
+        this.bom = bom;
+        this.text = text;
+        this.length = content.length;
+        this.hash = PomWriter.hash(content);
+    }
+
+    /**
+     * Read a pom, detecting its encoding from the byte order mark or the XML
+     * declaration.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static PomFile read(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        try (XmlStreamReader reader = new XmlStreamReader(new ByteArrayInputStream(content))) {
+            Charset charset = Charset.forName(reader.getEncoding());
+            return new PomFile(file, charset, Arrays.copyOf(content, bomLength(content)), IOUtil.toString(reader),
+                    content);
+        }
+    }
+
+    /**
+     * Read a pom, adding the time taken and the number of bytes read to the
+     * timings.
+     *
+     * @param file
+     * @param timings
+     * @return
+     * @throws IOException
+     */
+    public static PomFile read(File file, Timings timings) throws IOException {
+        long start = timings.start();
+        PomFile pomFile = read(file);
+        timings.stop(Timings.READ_POM, start);
+        timings.count(Timings.BYTES_READ, pomFile.length);
+        return pomFile;
+    }
+
+    /**
+     * True if the file still has the content it had when it was read. Hold
+     * the {@link PomLock} of the file to keep it so until written.
+     *
+     * @return
+     * @throws IOException
+     */
+    public boolean isCurrent() throws IOException {
+        if (!file.isFile() || file.length() != length) {
+            return false;
+        }
+        return Arrays.equals(hash, PomWriter.hash(Files.readAllBytes(file.toPath())));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * The original text of the pom, without byte order mark.
+     *
+     * @return
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * A copy of the text to edit.
+     *
+     * @return
+     */
+    public StringBuilder edit() {
+        return new StringBuilder(text);
+    }
+
+    /**
+     * Encode a whole document the way this pom is stored, with its byte
+     * order mark if it has one.
+     *
+     * @param document
+     * @return
+     */
+    public byte[] encode(CharSequence document) {
+        byte[] encoded = document.toString().getBytes(charset);
+        if (bom.length == 0) {
+            return encoded;
+        }
+        byte[] result = new byte[bom.length + encoded.length];
+        System.arraycopy(bom, 0, result, 0, bom.length);
+        System.arraycopy(encoded, 0, result, bom.length, encoded.length);
+        return result;
+    }
+
+    /**
+     * Write edits of the original text into the file.
+     *
+     * @param edits The edits as ranges of the original text.
+     * @return The number of bytes written, zero if there were no edits and
+     * the file was left alone.
+     * @throws IOException
+     */
+    public long write(EditList edits) throws IOException {
+        List<EditList.Edit> list = edits.getEdits();
+        if (list.isEmpty()) {
+            return 0;
+        }
+        Path tmp = PomWriter.tempFile(file);
+        long written = 0;
+        try {
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                int charPos = 0;
+                long bytePos = bom.length;
+                written += transfer(in, 0, bom.length, out);
+                for (EditList.Edit e : list) {
+                    long start = bytePos + encodedLength(charPos, e.start);
+                    written += transfer(in, bytePos, start - bytePos, out);
+                    ByteBuffer replacement = charset.newEncoder().encode(CharBuffer.wrap(e.text));
+                    while (replacement.hasRemaining()) {
+                        written += out.write(replacement);
+                    }
+                    bytePos = start + encodedLength(e.start, e.end);
+                    charPos = e.end;
+                }
+                written += transfer(in, bytePos, in.size() - bytePos, out);
+                out.force(true);
+            }
+            PomWriter.moveOver(tmp, file.toPath());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return written;
+    }
+
+    private static long transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long done = 0;
+        while (done < count) {
+            long n = in.transferTo(position + done, count - done, out);
+            if (n <= 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            done += n;
+        }
+        return done;
+    }
+
+    /**
+     * Number of bytes the original text between two offsets takes in the
+     * file. Fixed width and UTF-8 encodings are counted without encoding.
+     */
+    private long encodedLength(int from, int to) throws CharacterCodingException {
+        String name = charset.name();
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            long length = 0;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+        if (charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1)) {
+            return to - from;
+        }
+        if (name.equals("UTF-16BE") || name.equals("UTF-16LE")) {
+            return 2L * (to - from);
+        }
+        return charset.newEncoder().encode(CharBuffer.wrap(text, from, to)).remaining();
+    }
+
+    private static int bomLength(byte[] content) {
+        int n = content.length;
+        if (n >= 3 && (content[0] & 0xff) == 0xef && (content[1] & 0xff) == 0xbb && (content[2] & 0xff) == 0xbf) {
+            return 3;
+        }
+        if (n >= 2 && ((content[0] & 0xff) == 0xfe && (content[1] & 0xff) == 0xff
+                || (content[0] & 0xff) == 0xff && (content[1] & 0xff) == 0xfe)) {
+            return 2;
+        }
+        return 0;
+    }
+}
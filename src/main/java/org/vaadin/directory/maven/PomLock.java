@@ -0,0 +1,196 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a pom file, held across processes.
+ *
+ * Poms are replaced by renaming a new file over them, so the pom itself
+ * cannot carry the lock. The lock is taken on a lock file in the
+ * <code>target</code> directory next to the pom, named after it with a
+ * <code>.lock</code> suffix, so that it stays out of the source tree. The
+ * lock file is never replaced or removed while in use. Threads of the same
+ * build first take a lock inside the JVM, as file locks are held by the
+ * whole process.
+ *
+ * Locks are reentrant: a thread may lock a pom it already holds, and the
+ * file lock is released when the outermost lock is closed.
+ */
+public class PomLock implements Closeable {
+
+    /**
+     * Times an edit is computed without holding the lock before it is
+     * computed under the lock.
+     */
+    public static final int ATTEMPTS = 5;
+
+    private static final long TIMEOUT_MILLIS = 60000;
+
+    private static final long POLL_MILLIS = 50;
+
+    private static final String LOCK_DIRECTORY = "target";
+
+    private static final Map<String, Holder> HOLDERS = new HashMap<>();
+
+    private final File file;
+    private final Holder holder;
+    private boolean closed;
+
+    private PomLock(File file, Holder holder) {
+        this.file = file;
+        this.holder = holder;
+    }
+
+    /**
+     * Lock a pom, waiting while another thread or process holds it.
+     *
+     * @param file
+     * @return The lock, to be closed when done.
+     * @throws IOException if the lock could not be taken in time.
+     */
+    public static PomLock lock(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        Holder holder;
+        synchronized (HOLDERS) {
+            holder = HOLDERS.get(canonical.getPath());
+            if (holder == null) {
+                holder = new Holder();
+                HOLDERS.put(canonical.getPath(), holder);
+            }
+        }
+        try {
+            if (!holder.local.tryLock(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for the lock on " + file);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the lock on " + file);
+        }
+        if (holder.local.getHoldCount() > 1) {
+            // this thread already holds the file lock
+            return new PomLock(file, holder);
+        }
+        FileChannel channel = null;
+        try {
+            File lockFile = lockFile(canonical);
+            File dir = lockFile.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Could not create the directory " + dir);
+            }
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            FileLock lock;
+            while ((lock = tryLock(channel)) == null) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Timed out waiting for another process to release " + file);
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+            holder.channel = channel;
+            holder.lock = lock;
+            return new PomLock(file, holder);
+        } catch (IOException | RuntimeException ex) {
+            release(holder.local, channel);
+            throw ex;
+        } catch (InterruptedException ex) {
+            release(holder.local, channel);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the lock on " + file);
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            // held by another class loader of this JVM
+            return null;
+        }
+    }
+
+    /**
+     * The lock file of a pom, in the target directory next to it.
+     *
+     * @param canonical The canonical pom file.
+     * @return
+     */
+    static File lockFile(File canonical) {
+        return new File(new File(canonical.getParentFile(), LOCK_DIRECTORY), canonical.getName() + ".lock");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (holder.local.getHoldCount() > 1) {
+            holder.local.unlock();
+            return;
+        }
+        FileChannel channel = holder.channel;
+        FileLock lock = holder.lock;
+        holder.channel = null;
+        holder.lock = null;
+        try {
+            lock.release();
+        } finally {
+            release(holder.local, channel);
+        }
+    }
+
+    private static void release(ReentrantLock local, FileChannel channel) throws IOException {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    /**
+     * The locks of one pom in this JVM. The file lock is only touched by the
+     * thread holding the local lock.
+     */
+    private static class Holder {
+
+        final ReentrantLock local = new ReentrantLock();
+        FileChannel channel;
+        FileLock lock;
+    }
+}
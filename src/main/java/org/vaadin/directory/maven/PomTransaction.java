@@ -0,0 +1,329 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Changes to several pom files that are written all or none.
+ *
+ * New contents are staged in memory, from any number of threads. On commit
+ * the current content of every changed file is first saved to a journal
+ * directory, then a manifest naming the files is written, and only then
+ * are the files replaced. If a write fails the saved contents are restored.
+ * If the process dies in the middle, the manifest is left behind and
+ * {@link #recover(File)} restores the files the next time.
+ *
+ * The journal and the changed files are locked with {@link PomLock} for the
+ * duration of the commit. Files staged together with the content they were
+ * computed from are checked under the lock, and if any of them was changed
+ * by someone else in the meantime nothing is written.
+ */
+public class PomTransaction {
+
+    private static final String MANIFEST = "manifest";
+    private static final String ABSENT = "-";
+
+    private final File journal;
+    private final Map<File, byte[]> staged = new LinkedHashMap<>();
+    private final Map<File, PomFile> originals = new HashMap<>();
+
+    /**
+     * Create a transaction.
+     *
+     * @param journal Directory for the journal. It must not be used by
+     * another transaction at the same time.
+     */
+    public PomTransaction(File journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Stage the new content of a file. Content equal to the current file is
+     * ignored.
+     *
+     * @param file
+     * @param content
+     * @throws IOException if the current file could not be read.
+     */
+    public void stage(File file, byte[] content) throws IOException {
+        if (PomWriter.isUnchanged(file, content)) {
+            return;
+        }
+        synchronized (staged) {
+            staged.put(file.getAbsoluteFile(), content);
+        }
+    }
+
+    /**
+     * Stage the new content of a file computed from the content it had when
+     * it was read. The commit only writes it if the file still has that
+     * content.
+     *
+     * @param original
+     * @param content
+     * @throws IOException if the current file could not be read.
+     */
+    public void stage(PomFile original, byte[] content) throws IOException {
+        if (PomWriter.isUnchanged(original.getFile(), content)) {
+            return;
+        }
+        synchronized (staged) {
+            staged.put(original.getFile().getAbsoluteFile(), content);
+            originals.put(original.getFile().getAbsoluteFile(), original);
+        }
+    }
+
+    /**
+     * The files staged for writing.
+     *
+     * @return
+     */
+    public List<File> getStagedFiles() {
+        synchronized (staged) {
+            return new ArrayList<>(staged.keySet());
+        }
+    }
+
+    /**
+     * Write all staged files, or none of them.
+     *
+     * @param threads Number of files written at the same time.
+     * @return False if nothing was written because a file was changed after
+     * it was read. The staged contents are then discarded and should be
+     * computed again.
+     * @throws IOException if the files could not be written. The files are
+     * then restored to their content before the commit.
+     */
+    public boolean commit(int threads) throws IOException {
+        final Map<File, byte[]> files;
+        final Map<File, PomFile> read;
+        synchronized (staged) {
+            files = new LinkedHashMap<>(staged);
+            read = new HashMap<>(originals);
+            staged.clear();
+            originals.clear();
+        }
+        if (files.isEmpty()) {
+            return true;
+        }
+        List<PomLock> locks = new ArrayList<>();
+        try {
+            locks.add(PomLock.lock(journal));
+            // always lock in the same order so that two commits cannot wait
+            // for each other
+            List<File> sorted = new ArrayList<>(files.keySet());
+            Collections.sort(sorted);
+            for (File f : sorted) {
+                locks.add(PomLock.lock(f));
+            }
+            for (PomFile original : read.values()) {
+                if (!original.isCurrent()) {
+                    Logger.getLogger(PomTransaction.class.getName()).log(Level.FINE,
+                            "{0} was changed by someone else", original.getFile());
+                    return false;
+                }
+            }
+            write(files, threads);
+            return true;
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    private void write(Map<File, byte[]> files, int threads) throws IOException {
+        rollbackInterrupted(journal);
+        List<File> targets = new ArrayList<>(files.keySet());
+        writeJournal(targets);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, targets.size())));
+        IOException failure = null;
+        try {
+            List<Future<Boolean>> writes = new ArrayList<>();
+            for (final Map.Entry<File, byte[]> f : files.entrySet()) {
+                writes.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws IOException {
+                        return PomWriter.write(f.getKey(), f.getValue());
+                    }
+                }));
+            }
+            for (int i = 0; i < writes.size(); i++) {
+                try {
+                    writes.get(i).get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = new IOException("Could not write " + targets.get(i) + ": "
+                                + ex.getCause().getMessage(), ex.getCause());
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    if (failure == null) {
+                        failure = new IOException("Interrupted while writing " + targets.get(i), ex);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure != null) {
+            try {
+                rollback(journal);
+                deleteJournal(journal);
+            } catch (IOException ex) {
+                failure.addSuppressed(ex);
+            }
+            throw failure;
+        }
+        // removing the manifest commits the transaction
+        Files.delete(new File(journal, MANIFEST).toPath());
+        deleteJournal(journal);
+    }
+
+    /**
+     * Save the current contents of the targets and then the manifest.
+     */
+    private void writeJournal(List<File> targets) throws IOException {
+        if (!journal.isDirectory() && !journal.mkdirs()) {
+            throw new IOException("Could not create the journal directory " + journal);
+        }
+        StringBuilder manifest = new StringBuilder();
+        for (int i = 0; i < targets.size(); i++) {
+            File target = targets.get(i);
+            String backup = ABSENT;
+            if (target.isFile()) {
+                backup = i + ".bak";
+                PomWriter.write(new File(journal, backup), Files.readAllBytes(target.toPath()));
+            }
+            manifest.append(backup).append('\t').append(target.getPath()).append('\n');
+        }
+        PomWriter.write(new File(journal, MANIFEST), manifest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Restore the files of an interrupted transaction and remove its
+     * journal.
+     *
+     * @param journal The journal directory.
+     * @return The restored files.
+     * @throws IOException if a file could not be restored. The journal is
+     * then kept, so that recovery can be tried again.
+     */
+    public static List<File> recover(File journal) throws IOException {
+        PomLock lock = PomLock.lock(journal);
+        try {
+            return rollbackInterrupted(journal);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private static List<File> rollbackInterrupted(File journal) throws IOException {
+        List<File> restored = new ArrayList<>();
+        if (new File(journal, MANIFEST).isFile()) {
+            restored = rollback(journal);
+        }
+        deleteJournal(journal);
+        return restored;
+    }
+
+    private static void unlock(List<PomLock> locks) throws IOException {
+        IOException failure = null;
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            try {
+                locks.get(i).close();
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Restore all files listed in the manifest, continuing past files that
+     * fail. The manifest is removed only if every file was restored.
+     */
+    private static List<File> rollback(File journal) throws IOException {
+        List<File> restored = new ArrayList<>();
+        IOException failure = null;
+        File manifest = new File(journal, MANIFEST);
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+            String backup = line.substring(0, tab);
+            File target = new File(line.substring(tab + 1));
+            try {
+                if (!ABSENT.equals(backup)) {
+                    PomWriter.write(target, Files.readAllBytes(new File(journal, backup).toPath()));
+                } else if (target.isFile()) {
+                    Files.delete(target.toPath());
+                }
+                restored.add(target);
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = new IOException("Could not restore " + target + ": " + ex.getMessage(), ex);
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        Files.delete(manifest.toPath());
+        return restored;
+    }
+
+    private static void deleteJournal(File journal) {
+        File[] files = journal.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (!f.delete()) {
+                Logger.getLogger(PomTransaction.class.getName()).log(Level.WARNING, "Could not delete {0}", f);
+            }
+        }
+        journal.delete();
+    }
+}
@@ -18,23 +18,30 @@ package org.vaadin.directory.maven;
  * under the License.
  */
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.mojo.versions.api.PomHelper;
 import org.codehaus.mojo.versions.rewriting.ModifiedPomXMLEventReader;
@@ -51,6 +58,15 @@ import org.codehaus.stax2.XMLInputFactory2;
  */
 public class PomUtils {
 
+    private static final String VAADIN_VERSION_PROPERTY = "vaadin.version";
+
+    private static final String VAADIN_GROUP_ID = "com.vaadin";
+
+    private static final List<String> VAADIN_ARTIFACT_IDS = Arrays.asList(
+            "vaadin-bom", "vaadin-server", "vaadin-core", "vaadin-client", "vaadin-shared");
+
+    private static final Pattern MAJOR_VERSION = Pattern.compile("\\[?(\\d+)");
+
     /**
      * Load pom.xml form this project.
      *
@@ -79,10 +95,15 @@ public class PomUtils {
      */
     public static void saveToProject(MavenProject project, Model pomModel) {
         try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
             MavenXpp3Writer w = new MavenXpp3Writer();
-            w.write(new FileOutputStream(project.getFile()), pomModel);
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(PomUtils.class.getName()).log(Level.SEVERE, null, ex);
+            w.write(out, pomModel);
+            PomLock lock = PomLock.lock(project.getFile());
+            try {
+                PomWriter.write(project.getFile(), out.toByteArray());
+            } finally {
+                lock.close();
+            }
         } catch (IOException ex) {
             Logger.getLogger(PomUtils.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -117,28 +138,221 @@ public class PomUtils {
      * @param artifactId
      * @param version
      * @return
+     * @throws MojoExecutionException if the pom could not be updated.
      */
-    public static Model addDependency(Model pomModel, String groupId, String artifactId, String version) {
-        Dependency dep = findDependency(pomModel, groupId, artifactId);
-        if (dep == null) {
-            try {
-                StringBuilder input = PomHelper.readXmlFile(pomModel.getPomFile());
-                ModifiedPomXMLEventReader newPom = newModifiedPomXER(input);
-                addNewDependency(newPom, groupId, artifactId, version);
-                try (FileWriter out = new FileWriter(pomModel.getPomFile())) {
-                    out.write(newPom.asStringBuilder().toString());
+    public static Model addDependency(Model pomModel, String groupId, String artifactId, String version)
+            throws MojoExecutionException {
+        return addDependency(pomModel, groupId, artifactId, version, new Timings());
+    }
+
+    /**
+     * Adds a new dependency or updates the version of existing one, measuring
+     * the pom read, scan and write.
+     *
+     * @param pomModel
+     * @param groupId
+     * @param artifactId
+     * @param version
+     * @param timings
+     * @return
+     * @throws MojoExecutionException if the pom could not be updated.
+     */
+    public static Model addDependency(Model pomModel, String groupId, String artifactId, String version,
+            Timings timings) throws MojoExecutionException {
+        Dependency dep = new Dependency();
+        dep.setGroupId(groupId);
+        dep.setArtifactId(artifactId);
+        dep.setVersion(version);
+        return addDependencies(pomModel, Collections.singletonList(dep), timings);
+    }
+
+    /**
+     * Adds the dependencies not yet in the pom, reading, scanning and writing
+     * the pom file only once. The dependencies section is created if the pom
+     * has none.
+     *
+     * The pom is written under its {@link PomLock} only if nobody changed it
+     * after it was read. Otherwise it is read again, and the dependencies
+     * still missing from the new content are added to it. The last attempt
+     * holds the lock the whole time, and if the pom is changed even then,
+     * the dependencies are not added.
+     *
+     * @param pomModel
+     * @param dependencies
+     * @param timings
+     * @return The model or <code>null</code> if all dependencies were
+     * already present.
+     * @throws MojoExecutionException if the pom could not be read, parsed or
+     * written. The model is then left unchanged.
+     */
+    public static Model addDependencies(Model pomModel, List<Dependency> dependencies, Timings timings)
+            throws MojoExecutionException {
+        List<Dependency> missing = findMissingDependencies(pomModel, dependencies);
+        if (missing.isEmpty()) {
+            return null;
+        }
+        File file = pomModel.getPomFile();
+        try {
+            for (int attempt = 1;; attempt++) {
+                // the last attempt keeps the pom locked from reading to writing
+                PomLock lock = attempt == PomLock.ATTEMPTS ? PomLock.lock(file) : null;
+                try {
+                    PomFile pomFile = PomFile.read(file, timings);
+                    if (attempt > 1) {
+                        Model current = new MavenXpp3Reader().read(new StringReader(pomFile.getText()));
+                        missing = findMissingDependencies(current, dependencies);
+                        if (missing.isEmpty()) {
+                            break;
+                        }
+                    }
+                    EditList edits = new EditList();
+                    dependencyEdit(file, missing).edit(pomFile, timings, edits);
+                    if (lock == null) {
+                        lock = PomLock.lock(file);
+                    }
+                    if (pomFile.isCurrent()) {
+                        long start = timings.start();
+                        long written = pomFile.write(edits);
+                        timings.stop(Timings.WRITE_POM, start);
+                        if (written > 0) {
+                            timings.count(Timings.BYTES_WRITTEN, written);
+                        } else {
+                            timings.count(Timings.WRITES_SKIPPED, 1);
+                        }
+                        break;
+                    }
+                } finally {
+                    if (lock != null) {
+                        lock.close();
+                    }
+                }
+                timings.count(Timings.POM_CONFLICTS, 1);
+                if (attempt == PomLock.ATTEMPTS) {
+                    // even the locked attempt lost to a writer ignoring the lock
+                    throw new IOException(file + " was changed by someone else on every attempt");
                 }
-            } catch (XMLStreamException | IOException ex) {
-                Logger.getLogger(PomUtils.class.getName()).log(Level.SEVERE, null, ex);
             }
-            dep = new Dependency();
-            dep.setGroupId(groupId);
-            dep.setArtifactId(artifactId);
-            dep.setVersion(version);
-            pomModel.getDependencies().add(dep);
-            return pomModel;
+        } catch (XmlPullParserException | IOException ex) {
+            throw new MojoExecutionException("Could not add the dependencies to " + file + ": " + ex.getMessage(),
+                    ex);
         }
-        return null;
+        for (Dependency dep : findMissingDependencies(pomModel, dependencies)) {
+            Dependency added = new Dependency();
+            added.setGroupId(dep.getGroupId());
+            added.setArtifactId(dep.getArtifactId());
+            added.setVersion(dep.getVersion());
+            pomModel.getDependencies().add(added);
+        }
+        return pomModel;
+    }
+
+    /**
+     * Show how the dependencies not yet in the pom would be added, without
+     * changing the pom file or the model.
+     *
+     * @param pomModel
+     * @param dependencies
+     * @param timings
+     * @return The changes as a unified diff, or an empty string if all
+     * dependencies are already present.
+     * @throws MojoExecutionException if the pom could not be read or parsed.
+     */
+    public static String previewDependencies(Model pomModel, List<Dependency> dependencies, Timings timings)
+            throws MojoExecutionException {
+        List<Dependency> missing = findMissingDependencies(pomModel, dependencies);
+        if (missing.isEmpty()) {
+            return "";
+        }
+        File file = pomModel.getPomFile();
+        try {
+            PomFile pomFile = PomFile.read(file, timings);
+            PomDiff diff = new PomDiff(pomFile.getText());
+            dependencyEdit(file, missing).edit(pomFile, timings, diff);
+            return diff.render(file.getPath(), file.getPath());
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Could not read " + file + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static PomEdit dependencyEdit(File file, List<Dependency> dependencies) {
+        PomEdit edit = new PomEdit(file);
+        for (Dependency dep : dependencies) {
+            edit.addDependency(dep);
+        }
+        return edit;
+    }
+
+    private static List<Dependency> findMissingDependencies(Model pomModel, List<Dependency> dependencies) {
+        Map<String, Dependency> missing = new LinkedHashMap<>();
+        for (Dependency dep : dependencies) {
+            String key = dep.getGroupId() + ":" + dep.getArtifactId();
+            if (findDependency(pomModel, dep.getGroupId(), dep.getArtifactId()) == null && !missing.containsKey(key)) {
+                missing.put(key, dep);
+            }
+        }
+        return new ArrayList<>(missing.values());
+    }
+
+    /**
+     * Find the Vaadin version used by a pom, from the vaadin.version property
+     * or the version of a Vaadin framework dependency. Property references
+     * are evaluated against the pom properties.
+     *
+     * @param pomModel
+     * @return The version or <code>null</code> if it could not be resolved.
+     */
+    public static String findVaadinVersion(Model pomModel) {
+        Map<String, String> properties = properties(pomModel);
+
+        String version = null;
+        if (properties.containsKey(VAADIN_VERSION_PROPERTY)) {
+            version = PomHelper.evaluate("${" + VAADIN_VERSION_PROPERTY + "}", properties);
+        } else {
+            List<Dependency> deps = new ArrayList<>(pomModel.getDependencies());
+            if (pomModel.getDependencyManagement() != null) {
+                deps.addAll(pomModel.getDependencyManagement().getDependencies());
+            }
+            for (Dependency dep : deps) {
+                if (VAADIN_GROUP_ID.equals(dep.getGroupId()) && VAADIN_ARTIFACT_IDS.contains(dep.getArtifactId())
+                        && dep.getVersion() != null) {
+                    version = PomHelper.evaluate(dep.getVersion(), properties);
+                    break;
+                }
+            }
+        }
+        return version == null || version.contains("${") ? null : version;
+    }
+
+    /**
+     * The properties of a pom for evaluating expressions in it.
+     *
+     * @param pomModel
+     * @return The declared properties and <code>project.version</code>.
+     */
+    static Map<String, String> properties(Model pomModel) {
+        Map<String, String> properties = new HashMap<>();
+        for (String name : pomModel.getProperties().stringPropertyNames()) {
+            properties.put(name, pomModel.getProperties().getProperty(name));
+        }
+        if (pomModel.getVersion() != null) {
+            properties.put("project.version", pomModel.getVersion());
+        }
+        return properties;
+    }
+
+    /**
+     * The major version number, as used by the Directory API.
+     *
+     * @param version A version like 7.7.3.
+     * @return The major version or <code>null</code> if the version does not
+     * start with a number.
+     */
+    public static String majorVersion(String version) {
+        if (version == null) {
+            return null;
+        }
+        Matcher m = MAJOR_VERSION.matcher(version.trim());
+        return m.lookingAt() ? m.group(1) : null;
     }
 
     protected static final ModifiedPomXMLEventReader newModifiedPomXER(StringBuilder input) {
@@ -164,41 +378,54 @@ public class PomUtils {
      */
     public static void addNewDependency(final ModifiedPomXMLEventReader pom, String groupId, String artifactId, String version)
             throws XMLStreamException {
-        Stack<String> stack = new Stack<>();
-        String path = "";
-        final Pattern matchScopeRegex = Pattern.compile("/project/dependencies");
+        addNewDependency(pom, groupId, artifactId, version, new Timings());
+    }
 
-        pom.rewind();
+    /**
+     * Adds dependency to the the pom, counting the events scanned.
+     *
+     * @param pom The pom.
+     * @param groupId
+     * @param artifactId
+     * @param version
+     * @param timings
+     * @throws XMLStreamException if something went wrong.
+     */
+    public static void addNewDependency(final ModifiedPomXMLEventReader pom, String groupId, String artifactId, String version,
+            Timings timings) throws XMLStreamException {
+        Dependency dep = new Dependency();
+        dep.setGroupId(groupId);
+        dep.setArtifactId(artifactId);
+        dep.setVersion(version);
+        addNewDependencies(pom, Collections.singletonList(dep), timings);
+    }
 
-        int i = 0;
-        while (pom.hasNext()) {
-            XMLEvent event = pom.nextEvent();
-            if (event.isStartElement()) {
-                stack.push(path);
-                path = path + "/" + event.asStartElement().getName().getLocalPart();
+    /**
+     * Adds dependencies to the the pom in one pass, inserting them all at the
+     * end of the project dependencies. The dependencies section is created if
+     * the pom has none.
+     *
+     * @param pom The pom.
+     * @param dependencies
+     * @param timings
+     * @throws XMLStreamException if something went wrong.
+     */
+    public static void addNewDependencies(final ModifiedPomXMLEventReader pom, List<Dependency> dependencies,
+            Timings timings) throws XMLStreamException {
+        dependencyEdit(null, dependencies).insert(pom, timings);
+    }
 
-                if (matchScopeRegex.matcher(path).matches()) {
-                    pom.mark(0);
-                }
-            }
-            if (event.isEndElement()) {
-                if (matchScopeRegex.matcher(path).matches()) {
-                    pom.mark(1);
-                    if (pom.hasMark(0) && pom.hasMark(1)) {
-                        pom.replaceMark(1, "    <dependency><groupId>"
-                                + groupId
-                                + "</groupId><artifactId>"
-                                + artifactId
-                                + "</artifactId><version>"
-                                + version
-                                + "</version></dependency>\n\t</dependencies>");
-                        return;
-                    }
-                    pom.clearMark(0);
-                    pom.clearMark(1);
-                }
-                path = stack.pop();
-            }
-        }
+    /**
+     * A dependency element on one line. The version element is left out if
+     * the dependency has no version.
+     *
+     * @param dep
+     * @return
+     */
+    static String dependencyElement(Dependency dep) {
+        return "<dependency><groupId>" + dep.getGroupId()
+                + "</groupId><artifactId>" + dep.getArtifactId()
+                + (dep.getVersion() == null ? "</artifactId>" : "</artifactId><version>" + dep.getVersion() + "</version>")
+                + "</dependency>";
     }
 }
@@ -0,0 +1,139 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Writes pom files safely.
+ *
+ * The new content is written to a new temporary file in the same directory,
+ * with the permissions of the pom, forced to disk and renamed over the pom,
+ * so readers see either the old or the new pom but never a partly written
+ * one. Content equal to the current file is not written at all, which
+ * keeps the file timestamp and anything watching it untouched.
+ */
+public class PomWriter {
+
+    /**
+     * Replace the content of a file unless it is unchanged.
+     *
+     * @param file
+     * @param content
+     * @return True if the file was written, false if it already had the
+     * content.
+     * @throws IOException
+     */
+    public static boolean write(File file, byte[] content) throws IOException {
+        if (isUnchanged(file, content)) {
+            return false;
+        }
+        Path target = file.toPath();
+        Path tmp = tempFile(file);
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            moveOver(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return true;
+    }
+
+    /**
+     * Create a new temporary file next to a file, for writing its new
+     * content. Each call gets its own file, so concurrent writers do not
+     * overwrite each other's content. The temporary file gets the
+     * permissions of the file, if it exists, as it will replace it.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    static Path tempFile(File file) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            if (Files.exists(target)
+                    && Files.getFileStore(tmp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(target));
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+        return tmp;
+    }
+
+    /**
+     * Replace a file with a temporary file, atomically where possible.
+     *
+     * @param tmp
+     * @param target
+     * @throws IOException
+     */
+    static void moveOver(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * True if the file exists and has exactly the given content.
+     *
+     * @param file
+     * @param content
+     * @return
+     * @throws IOException
+     */
+    static boolean isUnchanged(File file, byte[] content) throws IOException {
+        if (!file.isFile() || file.length() != content.length) {
+            return false;
+        }
+        return Arrays.equals(Files.readAllBytes(file.toPath()), content);
+    }
+
+    static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(content);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
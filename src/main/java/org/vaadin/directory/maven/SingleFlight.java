@@ -0,0 +1,90 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coalesces concurrent identical calls: while a call for a key is in flight,
+ * other callers asking for the same key wait for it and share its result
+ * instead of making their own call.
+ *
+ * Parallel reactor builds run the goals of all modules in the same plugin
+ * class loader, so a static instance coalesces across modules.
+ *
+ * @param <V> The result type.
+ */
+public class SingleFlight<V> {
+
+    private final ConcurrentMap<String, FutureTask<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Run the call, or wait for the identical call already in flight.
+     *
+     * @param key Identifies identical calls.
+     * @param call The call.
+     * @return The result of the call.
+     * @throws IOException if the call failed with one.
+     */
+    public V execute(String key, Callable<V> call) throws IOException {
+        FutureTask<V> task = new FutureTask<>(call);
+        FutureTask<V> inFlight = calls.putIfAbsent(key, task);
+        if (inFlight == null) {
+            inFlight = task;
+            try {
+                task.run();
+            } finally {
+                calls.remove(key, task);
+            }
+        }
+        try {
+            return inFlight.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + key);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Number of calls currently in flight.
+     *
+     * @return
+     */
+    public int inFlight() {
+        return calls.size();
+    }
+}
@@ -0,0 +1,168 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Directory, serving recorded search responses over
+ * HTTP to a {@link DirectoryClient} configured with its URL.
+ *
+ * Responses are taken from a catalog cache: a recorded result for the exact
+ * search if there is one, otherwise the matching add-ons of the recorded
+ * catalog snapshot.
+ */
+public class StubDirectoryServer {
+
+    private final CatalogCache recordings;
+    private final Map<String, CatalogIndex> indexes = new HashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Create a server.
+     *
+     * @param recordings Cache holding the recorded responses. It is only
+     * read, never revalidated.
+     */
+    public StubDirectoryServer(CatalogCache recordings) {
+        this.recordings = recordings;
+    }
+
+    /**
+     * Start serving on the loopback interface.
+     *
+     * @param port Port to listen on, 0 for any free port.
+     * @param threads Number of request handler threads.
+     * @throws IOException if the server could not be started.
+     */
+    public void start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        server.setExecutor(executor);
+        server.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    respond(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Base URL of the running server.
+     *
+     * @return
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":"
+                + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Number of search requests served since the server was created.
+     *
+     * @return
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        String version = params.get("version");
+        String query = params.containsKey("q") ? params.get("q") : "";
+        boolean fullSearch = Boolean.parseBoolean(params.get("full"));
+        List<AddonEntry> result = version == null ? null : lookup(version, query, fullSearch);
+        if (result == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(body))) {
+            CatalogCache.writeEntries(out, result);
+        }
+    }
+
+    private List<AddonEntry> lookup(String version, String query, boolean fullSearch) throws IOException {
+        List<AddonEntry> recorded = CatalogCache.read(recordings.entryFile(version, query, fullSearch));
+        if (recorded != null) {
+            return recorded;
+        }
+        CatalogIndex index;
+        synchronized (indexes) {
+            index = indexes.get(version);
+            if (index == null) {
+                List<AddonEntry> catalog = recordings.catalog(version, false);
+                if (catalog == null) {
+                    return null;
+                }
+                index = new CatalogIndex(catalog);
+                indexes.put(version, index);
+            }
+        }
+        return index.search(query, fullSearch);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+}
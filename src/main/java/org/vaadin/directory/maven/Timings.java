@@ -0,0 +1,184 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Wall time spent in the phases of a goal, and counters of the work done.
+ *
+ * A phase may be entered many times, also concurrently, and its time and
+ * number of calls are summed. Instances are thread safe.
+ */
+public class Timings {
+
+    public static final String SEARCH = "search";
+    public static final String NETWORK = "network";
+    public static final String RANK = "rank";
+    public static final String RESOLVE = "resolve versions";
+    public static final String READ_POM = "read pom";
+    public static final String SCAN_POM = "scan pom";
+    public static final String WRITE_POM = "write pom";
+
+    public static final String BYTES_READ = "bytes read";
+    public static final String BYTES_WRITTEN = "bytes written";
+    public static final String WRITES_SKIPPED = "unchanged writes skipped";
+    public static final String EVENTS_SCANNED = "events scanned";
+    public static final String REWINDS = "rewinds";
+    public static final String POM_CONFLICTS = "concurrent pom changes";
+
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+    /**
+     * Start measuring a phase.
+     *
+     * @return The start time to pass to {@link #stop(String, long)}.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Add the time since the start to a phase.
+     *
+     * @param phase
+     * @param start The value returned by {@link #start()}.
+     */
+    public void stop(String phase, long start) {
+        add(phase, System.nanoTime() - start);
+    }
+
+    /**
+     * Add time to a phase.
+     *
+     * @param phase
+     * @param nanos
+     */
+    public synchronized void add(String phase, long nanos) {
+        long[] p = phases.get(phase);
+        if (p == null) {
+            p = new long[2];
+            phases.put(phase, p);
+        }
+        p[0] += nanos;
+        p[1]++;
+    }
+
+    /**
+     * Increase a counter.
+     *
+     * @param counter
+     * @param amount
+     */
+    public synchronized void count(String counter, long amount) {
+        Long c = counters.get(counter);
+        counters.put(counter, (c == null ? 0 : c) + amount);
+    }
+
+    /**
+     * Total time of a phase.
+     *
+     * @param phase
+     * @return Milliseconds, or zero if the phase was never entered.
+     */
+    public synchronized long getMillis(String phase) {
+        long[] p = phases.get(phase);
+        return p == null ? 0 : TimeUnit.NANOSECONDS.toMillis(p[0]);
+    }
+
+    /**
+     * Value of a counter.
+     *
+     * @param counter
+     * @return
+     */
+    public synchronized long getCount(String counter) {
+        Long c = counters.get(counter);
+        return c == null ? 0 : c;
+    }
+
+    /**
+     * Write one line per phase and counter to the log.
+     *
+     * @param log
+     * @param info Log on info level instead of debug.
+     */
+    public synchronized void log(Log log, boolean info) {
+        if (!info && !log.isDebugEnabled()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("Timings:");
+        for (Map.Entry<String, long[]> p : phases.entrySet()) {
+            sb.append("\n  ").append(p.getKey()).append(": ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(p.getValue()[0])).append(" ms")
+                    .append(" (").append(p.getValue()[1]).append(p.getValue()[1] == 1 ? " call)" : " calls)");
+        }
+        for (Map.Entry<String, Long> c : counters.entrySet()) {
+            sb.append("\n  ").append(c.getKey()).append(": ").append(c.getValue());
+        }
+        if (info) {
+            log.info(sb);
+        } else {
+            log.debug(sb);
+        }
+    }
+
+    /**
+     * Write the phases and counters as a JSON object.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public synchronized void writeJson(File file) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            out.write("{\n  \"phases\": {");
+            String sep = "\n";
+            for (Map.Entry<String, long[]> p : phases.entrySet()) {
+                out.write(sep + "    " + quote(p.getKey()) + ": {\"millis\": "
+                        + TimeUnit.NANOSECONDS.toMillis(p.getValue()[0])
+                        + ", \"calls\": " + p.getValue()[1] + "}");
+                sep = ",\n";
+            }
+            out.write("\n  },\n  \"counters\": {");
+            sep = "\n";
+            for (Map.Entry<String, Long> c : counters.entrySet()) {
+                out.write(sep + "    " + quote(c.getKey()) + ": " + c.getValue());
+                sep = ",\n";
+            }
+            out.write("\n  }\n}\n");
+        }
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
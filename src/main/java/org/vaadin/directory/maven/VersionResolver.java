@@ -0,0 +1,175 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.metadata.ArtifactMetadataRetrievalException;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.codehaus.mojo.versions.api.ArtifactVersions;
+import org.codehaus.mojo.versions.ordering.VersionComparator;
+
+/**
+ * Resolves the newest released version of add-ons from the project
+ * repositories.
+ *
+ * The newest release is looked up from the repository metadata. If the
+ * project declares a version range for the add-on, the newest release in
+ * that range is used. If it declares a plain version, that version is the
+ * lower bound, and otherwise the version reported by the Directory is.
+ * Either way the newest release stays within the major version of the
+ * lower bound. Properties in the declared version are evaluated first.
+ */
+public class VersionResolver {
+
+    private static final VersionComparator COMPARATOR = new MajorMinorIncrementalComparator();
+
+    private final ArtifactFactory artifactFactory;
+    private final ArtifactMetadataSource metadataSource;
+    private final ArtifactRepository localRepository;
+    private final List<ArtifactRepository> remoteRepositories;
+
+    public VersionResolver(ArtifactFactory artifactFactory, ArtifactMetadataSource metadataSource,
+            ArtifactRepository localRepository, List<ArtifactRepository> remoteRepositories) {
+        this.artifactFactory = artifactFactory;
+        this.metadataSource = metadataSource;
+        this.localRepository = localRepository;
+        this.remoteRepositories = remoteRepositories;
+    }
+
+    /**
+     * Look up the available versions of an artifact.
+     *
+     * @param artifact
+     * @return
+     * @throws IOException if the repository metadata could not be read.
+     */
+    public ArtifactVersions lookupArtifactVersions(Artifact artifact) throws IOException {
+        try {
+            @SuppressWarnings("unchecked")
+            List<ArtifactVersion> versions = metadataSource.retrieveAvailableVersions(artifact, localRepository,
+                    remoteRepositories);
+            return new ArtifactVersions(artifact, versions == null ? new ArrayList<ArtifactVersion>() : versions,
+                    COMPARATOR);
+        } catch (ArtifactMetadataRetrievalException ex) {
+            throw new IOException("Could not read the versions of " + artifact.getDependencyConflictId()
+                    + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * The newest released version of an add-on allowed by the project.
+     *
+     * @param addon
+     * @param declared The version or version range the project already
+     * declares for the add-on, with properties evaluated, or
+     * <code>null</code>.
+     * @return The add-on with the newest version, or the add-on itself if no
+     * newer version was found.
+     * @throws IOException if the repository metadata could not be read.
+     */
+    public AddonEntry resolve(AddonEntry addon, String declared) throws IOException {
+        if (!addon.hasMavenCoordinates() || addon.getVersion() == null) {
+            return addon;
+        }
+        VersionRange range = null;
+        ArtifactVersion lowerBound = new DefaultArtifactVersion(addon.getVersion());
+        if (declared != null && (declared.startsWith("[") || declared.startsWith("("))) {
+            try {
+                range = VersionRange.createFromVersionSpec(declared);
+                lowerBound = null;
+            } catch (InvalidVersionSpecificationException ex) {
+                throw new IOException("Invalid version range " + declared + " for " + addon.getKey(), ex);
+            }
+        } else if (declared != null) {
+            // a plain version is what the project has now, upgrades stay
+            // within its major version
+            lowerBound = new DefaultArtifactVersion(declared);
+        }
+        ArtifactVersion upperBound = lowerBound == null ? null : COMPARATOR.incrementSegment(lowerBound, 0);
+        Artifact artifact = artifactFactory.createDependencyArtifact(addon.getGroupId(), addon.getArtifactId(),
+                range != null ? range : VersionRange.createFromVersion(addon.getVersion()), "jar", null, null);
+        ArtifactVersion newest = lookupArtifactVersions(artifact)
+                .getNewestVersion(range, lowerBound, upperBound, false, true, false);
+        if (newest == null || newest.toString().equals(addon.getVersion())) {
+            return addon;
+        }
+        return addon.withVersion(newest.toString());
+    }
+
+    /**
+     * Resolve an add-on on the executor.
+     *
+     * @param executor
+     * @param addon
+     * @param declared
+     * @return
+     */
+    public Future<AddonEntry> submit(ExecutorService executor, final AddonEntry addon, final String declared) {
+        return executor.submit(new Callable<AddonEntry>() {
+            @Override
+            public AddonEntry call() throws IOException {
+                return resolve(addon, declared);
+            }
+        });
+    }
+
+    /**
+     * Orders versions like Maven, by major, minor and incremental version and
+     * qualifier.
+     */
+    private static class MajorMinorIncrementalComparator implements VersionComparator {
+
+        @Override
+        public int compare(ArtifactVersion a, ArtifactVersion b) {
+            return new DefaultArtifactVersion(a.toString()).compareTo(new DefaultArtifactVersion(b.toString()));
+        }
+
+        @Override
+        public int getSegmentCount(ArtifactVersion v) {
+            return v.getQualifier() == null ? 3 : 4;
+        }
+
+        @Override
+        public ArtifactVersion incrementSegment(ArtifactVersion v, int segment) {
+            int major = v.getMajorVersion();
+            int minor = v.getMinorVersion();
+            int incremental = v.getIncrementalVersion();
+            switch (segment) {
+                case 0:
+                    return new DefaultArtifactVersion((major + 1) + ".0.0");
+                case 1:
+                    return new DefaultArtifactVersion(major + "." + (minor + 1) + ".0");
+                default:
+                    return new DefaultArtifactVersion(major + "." + minor + "." + (incremental + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class AddonRankingTest extends TestCase {
+
+    private final List<AddonEntry> hits = Arrays.asList(
+            FacetFilterTest.entry("a", 1),
+            FacetFilterTest.entry("b", 5),
+            FacetFilterTest.entry("c", 3),
+            FacetFilterTest.entry("d", 5),
+            FacetFilterTest.entry("e", 0));
+
+    public void testRelevanceKeepsOrder() {
+        assertEquals("abcde", names(new AddonRanking(1, 0).top(hits, 0, 0)));
+    }
+
+    public void testRating() {
+        // equal ratings keep the search order
+        assertEquals("bdcae", names(new AddonRanking(0, 1).top(hits, 0, 0)));
+    }
+
+    public void testWeighted() {
+        // relevance 1, 0.8, 0.6, 0.4, 0.2 and rating 0.2, 1, 0.6, 1, 0
+        assertEquals("bdcae", names(new AddonRanking(0.4, 0.6).top(hits, 0, 0)));
+        assertEquals("abcde", names(new AddonRanking(0.9, 0.1).top(hits, 0, 0)));
+    }
+
+    public void testPages() {
+        AddonRanking ranking = new AddonRanking(0, 1);
+        assertEquals("bd", names(ranking.top(hits, 0, 2)));
+        assertEquals("ca", names(ranking.top(hits, 2, 2)));
+        assertEquals("e", names(ranking.top(hits, 4, 2)));
+        assertEquals("", names(ranking.top(hits, 5, 2)));
+        assertEquals("cae", names(ranking.top(hits, 2, 0)));
+        assertEquals("bd", names(ranking.top(hits, -1, 2)));
+    }
+
+    public void testEmpty() {
+        assertTrue(new AddonRanking(1, 0).top(new ArrayList<AddonEntry>(), 0, 10).isEmpty());
+    }
+
+    private static String names(List<AddonEntry> entries) {
+        StringBuilder sb = new StringBuilder();
+        for (AddonEntry e : entries) {
+            sb.append(e.getName());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class BinaryCatalogTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("binary-catalog").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(dir);
+    }
+
+    public void testRoundTrip() throws Exception {
+        List<AddonEntry> entries = Arrays.asList(
+                new AddonEntry("Grid Util", "Helpers for Grid", Arrays.asList("Apache License 2.0", "GPL 3.0"),
+                        4.5, "org.vaadin.addons", "gridutil", "2.1.0"),
+                new AddonEntry("Märkdown Ëditor", null, Collections.<String>emptyList(), 0, null, null, null),
+                new AddonEntry("Grid Util", "Same name, same strings", Arrays.asList("GPL 3.0"),
+                        3, "org.vaadin.addons", "gridutil2", "2.1.0"));
+        BinaryCatalog catalog = writeAndOpen(entries);
+        assertEquals(entries.size(), catalog.size());
+        assertEquals(entries, new ArrayList<>(catalog));
+        assertEquals(entries.get(1), catalog.get(1));
+    }
+
+    public void testEmpty() throws Exception {
+        BinaryCatalog catalog = writeAndOpen(new ArrayList<AddonEntry>());
+        assertEquals(0, catalog.size());
+        assertTrue(catalog.searchNames("grid", null).isEmpty());
+    }
+
+    public void testSearchNames() throws Exception {
+        BinaryCatalog catalog = writeAndOpen(Arrays.asList(
+                FacetFilterTest.entry("Grid Util", 1),
+                FacetFilterTest.entry("Map Component", 1),
+                FacetFilterTest.entry("Grid Renderers", 1)));
+        assertEquals(Arrays.asList(catalog.get(0), catalog.get(2)), catalog.searchNames("grid", null));
+        assertEquals(Arrays.asList(catalog.get(0)), catalog.searchNames("grid ut", null));
+        assertEquals(Arrays.asList(catalog.get(1)), catalog.searchNames("comp", null));
+        assertEquals(Arrays.asList(catalog.get(0)), catalog.searchNames("util grid", null));
+        assertTrue(catalog.searchNames("grid map", null).isEmpty());
+    }
+
+    public void testMissingFile() throws Exception {
+        assertNull(BinaryCatalog.open(new File(dir, "missing" + BinaryCatalog.EXTENSION)));
+    }
+
+    public void testWrongFormat() throws Exception {
+        File file = new File(dir, "bad" + BinaryCatalog.EXTENSION);
+        Files.write(file.toPath(), new byte[64]);
+        try {
+            BinaryCatalog.open(file);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testTruncated() throws Exception {
+        writeAndOpen(Arrays.asList(FacetFilterTest.entry("Grid Util", 1), FacetFilterTest.entry("Map", 2)));
+        File file = new File(dir, "catalog" + BinaryCatalog.EXTENSION);
+        byte[] content = Files.readAllBytes(file.toPath());
+        for (int length = 0; length < content.length; length++) {
+            Files.write(file.toPath(), Arrays.copyOf(content, length));
+            try {
+                BinaryCatalog.open(file);
+                fail("opened a catalog truncated to " + length + " bytes");
+            } catch (IOException expected) {
+            }
+            assertNull(CatalogCache.read(file));
+        }
+    }
+
+    public void testCorruptOffset() throws Exception {
+        writeAndOpen(Arrays.asList(FacetFilterTest.entry("Grid Util", 1)));
+        File file = new File(dir, "catalog" + BinaryCatalog.EXTENSION);
+        byte[] content = Files.readAllBytes(file.toPath());
+        // the name offset of the only record, the records start at 20
+        int record = ByteBuffer.wrap(content).getInt(20);
+        ByteBuffer.wrap(content).putInt(record, content.length);
+        Files.write(file.toPath(), content);
+        try {
+            BinaryCatalog.open(file);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private BinaryCatalog writeAndOpen(List<AddonEntry> entries) throws IOException {
+        File file = new File(dir, "catalog" + BinaryCatalog.EXTENSION);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            BinaryCatalog.write(out, entries);
+        }
+        return BinaryCatalog.open(file);
+    }
+}
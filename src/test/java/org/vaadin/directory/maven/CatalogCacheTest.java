@@ -0,0 +1,103 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+public class CatalogCacheTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("catalog-cache").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(dir);
+    }
+
+    public void testWriteReplaces() throws Exception {
+        File file = new File(dir, "catalog" + BinaryCatalog.EXTENSION);
+        CatalogCache.write(file, Arrays.asList(FacetFilterTest.entry("a", 1)));
+        CatalogCache.write(file, Arrays.asList(FacetFilterTest.entry("b", 2)));
+        assertEquals(Arrays.asList(FacetFilterTest.entry("b", 2)), CatalogCache.read(file));
+        // no temporary files are left behind
+        assertEquals(Arrays.asList(file.getName()), Arrays.asList(dir.list()));
+    }
+
+    public void testConcurrentWriters() throws Exception {
+        final File file = new File(dir, "entry.bin");
+        final List<List<AddonEntry>> contents = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            List<AddonEntry> entries = new ArrayList<>();
+            for (int j = 0; j <= i * 50; j++) {
+                entries.add(FacetFilterTest.entry("addon" + i + "-" + j, j % 5));
+            }
+            contents.add(entries);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int round = 0; round < 20; round++) {
+                for (final List<AddonEntry> entries : contents) {
+                    // without the lock, like writers in other processes
+                    // before they take turns
+                    writes.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            CatalogCache.write(file, entries);
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<?> w : writes) {
+                w.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(contents.contains(CatalogCache.read(file)));
+        assertEquals(Arrays.asList(file.getName()), Arrays.asList(dir.list()));
+    }
+
+    public void testLocked() throws Exception {
+        File file = new File(dir, "entry.bin");
+        String result = CatalogCache.locked(file, new Callable<String>() {
+            @Override
+            public String call() {
+                return "done";
+            }
+        });
+        assertEquals("done", result);
+        assertTrue(new File(dir, "entry.bin.lock").isFile());
+    }
+}
@@ -0,0 +1,155 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+public class CatalogSyncTest extends TestCase {
+
+    private File dir;
+    private StubClient client;
+    private CatalogCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("catalog-sync").toFile();
+        client = new StubClient();
+        cache = new CatalogCache(dir, 60, client);
+    }
+
+    @Override
+    protected void tearDown() {
+        TestFiles.delete(dir);
+    }
+
+    public void testFirstSyncIsFull() throws Exception {
+        client.catalog = Arrays.asList(FacetFilterTest.entry("a", 1), FacetFilterTest.entry("b", 2));
+        CatalogSync.Result result = new CatalogSync(cache).sync("8");
+        assertTrue(result.isFull());
+        assertEquals(2, result.getAdded());
+        assertEquals(client.catalog, cache.catalog("8", false));
+    }
+
+    public void testChanges() throws Exception {
+        client.catalog = Arrays.asList(FacetFilterTest.entry("a", 1), FacetFilterTest.entry("b", 2));
+        new CatalogSync(cache).sync("8");
+        client.catalog = Arrays.asList(FacetFilterTest.entry("a", 1).withVersion("1.1"),
+                FacetFilterTest.entry("c", 3));
+        CatalogSync.Result result = new CatalogSync(cache).sync("8");
+        assertFalse(result.isFull());
+        assertEquals(1, result.getAdded());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getRemoved());
+        assertEquals(client.catalog, cache.catalog("8", false));
+    }
+
+    public void testUnchanged() throws Exception {
+        client.catalog = Arrays.asList(FacetFilterTest.entry("a", 1));
+        new CatalogSync(cache).sync("8");
+        assertFalse(new CatalogSync(cache).sync("8").hasChanges());
+        assertEquals(2, client.calls.get());
+    }
+
+    public void testLoadWaitsForSync() throws Exception {
+        client.catalog = Arrays.asList(FacetFilterTest.entry("a", 1));
+        client.blocked = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<CatalogSync.Result> sync = executor.submit(new Callable<CatalogSync.Result>() {
+                @Override
+                public CatalogSync.Result call() throws Exception {
+                    return new CatalogSync(cache).sync("8");
+                }
+            });
+            assertTrue(client.entered.await(5, TimeUnit.SECONDS));
+            Future<List<AddonEntry>> load = executor.submit(new Callable<List<AddonEntry>>() {
+                @Override
+                public List<AddonEntry> call() throws Exception {
+                    return cache.catalog("8", true);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(load.isDone());
+            client.blocked.countDown();
+            assertTrue(sync.get(5, TimeUnit.SECONDS).isFull());
+            // the load finds the snapshot the sync wrote
+            assertEquals(client.catalog, load.get(5, TimeUnit.SECONDS));
+            assertEquals(1, client.calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testAwaitBackground() throws Exception {
+        client.catalog = Arrays.asList(FacetFilterTest.entry("a", 1));
+        new CatalogSync(cache).syncInBackground("8");
+        assertTrue(CatalogSync.awaitBackground());
+        assertEquals(client.catalog, cache.catalog("8", false));
+        assertFalse(CatalogSync.awaitBackground());
+    }
+
+    public void testAwaitFinishedBackground() throws Exception {
+        client.catalog = Arrays.asList(FacetFilterTest.entry("a", 1));
+        new CatalogSync(cache).syncInBackground("8");
+        // let the sync finish before waiting for it
+        File file = cache.catalogFile("8");
+        for (int i = 0; i < 500 && !file.isFile(); i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertTrue(CatalogSync.awaitBackground());
+        assertFalse(CatalogSync.awaitBackground());
+    }
+
+    private static class StubClient extends DirectoryClient {
+
+        volatile List<AddonEntry> catalog = new ArrayList<>();
+        volatile CountDownLatch blocked;
+        final CountDownLatch entered = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        protected Callable<List<AddonEntry>> newCall(String version, String query, boolean fullSearch) {
+            return new Callable<List<AddonEntry>>() {
+                @Override
+                public List<AddonEntry> call() throws Exception {
+                    calls.incrementAndGet();
+                    entered.countDown();
+                    if (blocked != null) {
+                        blocked.await();
+                    }
+                    return catalog;
+                }
+            };
+        }
+    }
+}
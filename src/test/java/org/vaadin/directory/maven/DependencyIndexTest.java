@@ -0,0 +1,69 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import junit.framework.TestCase;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+
+public class DependencyIndexTest extends TestCase {
+
+    public void testPlainVersion() {
+        DependencyIndex index = new DependencyIndex(model(PomEditTest.dependency("org.example", "a", " 1.2.0 ")));
+        assertEquals("1.2.0", index.getVersion(index.findDependency("org.example", "a")));
+    }
+
+    public void testPropertyVersion() {
+        Model model = model(PomEditTest.dependency("org.example", "a", "${a.version}"),
+                PomEditTest.dependency("org.example", "b", "${project.version}"),
+                PomEditTest.dependency("org.example", "c", "[${a.version},3)"));
+        model.getProperties().setProperty("a.version", "2.1");
+        DependencyIndex index = new DependencyIndex(model);
+        assertEquals("2.1", index.getVersion(index.findDependency("org.example", "a")));
+        assertEquals("1.0-SNAPSHOT", index.getVersion(index.findDependency("org.example", "b")));
+        assertEquals("[2.1,3)", index.getVersion(index.findDependency("org.example", "c")));
+    }
+
+    public void testUndefinedProperty() {
+        DependencyIndex index = new DependencyIndex(model(PomEditTest.dependency("org.example", "a", "${missing}")));
+        assertNull(index.getVersion(index.findDependency("org.example", "a")));
+    }
+
+    public void testNoVersion() {
+        Model model = model(PomEditTest.dependency("org.example", "a", null));
+        DependencyManagement dm = new DependencyManagement();
+        dm.addDependency(PomEditTest.dependency("org.example", "a", "3.0"));
+        model.setDependencyManagement(dm);
+        DependencyIndex index = new DependencyIndex(model);
+        assertNull(index.getVersion(index.findDependency("org.example", "a")));
+        assertEquals("3.0", index.getVersion(index.findManagedDependency("org.example", "a")));
+        assertNull(index.getVersion(null));
+    }
+
+    private static Model model(Dependency... dependencies) {
+        Model model = new Model();
+        model.setVersion("1.0-SNAPSHOT");
+        for (Dependency dep : dependencies) {
+            model.addDependency(dep);
+        }
+        return model;
+    }
+}
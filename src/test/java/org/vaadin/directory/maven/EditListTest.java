@@ -0,0 +1,101 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+public class EditListTest extends TestCase {
+
+    public void testSeparateEdits() {
+        EditList edits = new EditList();
+        StringBuilder text = new StringBuilder("0123456789");
+        edit(edits, text, 6, 8, "x");
+        edit(edits, text, 1, 2, "abc");
+        assertEquals("0abc2345x89", text.toString());
+        assertEquals(2, edits.getEdits().size());
+        assertEquals(1, edits.getEdits().get(0).start);
+        assertEquals(6, edits.getEdits().get(1).start);
+        assertEquals(8, edits.getEdits().get(1).end);
+    }
+
+    public void testMergeOverlapping() {
+        EditList edits = new EditList();
+        StringBuilder text = new StringBuilder("0123456789");
+        edit(edits, text, 2, 4, "ab");
+        edit(edits, text, 3, 6, "");
+        assertEquals(1, edits.getEdits().size());
+        assertEquals(apply("0123456789", edits.getEdits()), text.toString());
+    }
+
+    public void testMergeTouching() {
+        EditList edits = new EditList();
+        StringBuilder text = new StringBuilder("0123456789");
+        edit(edits, text, 2, 4, "ab");
+        edit(edits, text, 4, 5, "c");
+        assertEquals(1, edits.getEdits().size());
+        assertEquals("01abc56789", text.toString());
+        assertEquals(apply("0123456789", edits.getEdits()), text.toString());
+    }
+
+    public void testNoChanges() {
+        assertFalse(new EditList().hasChanges());
+    }
+
+    public void testRandomEdits() {
+        for (int c = 0; c < 500; c++) {
+            Random r = new Random(c);
+            String original = "abcdefghijklmnopqrstuvwxyz".substring(0, 5 + r.nextInt(20));
+            EditList edits = new EditList();
+            StringBuilder text = new StringBuilder(original);
+            for (int i = 0; i < 1 + r.nextInt(8); i++) {
+                int start = r.nextInt(text.length() + 1);
+                int end = start + r.nextInt(Math.min(4, text.length() - start) + 1);
+                edit(edits, text, start, end, "XYZ".substring(0, r.nextInt(4)));
+            }
+            assertEquals("case " + c, text.toString(), apply(original, edits.getEdits()));
+            List<EditList.Edit> list = edits.getEdits();
+            for (int i = 1; i < list.size(); i++) {
+                assertTrue("case " + c, list.get(i - 1).end < list.get(i).start);
+            }
+        }
+    }
+
+    /**
+     * Make an edit to the text and record it.
+     */
+    private static void edit(EditList edits, StringBuilder text, int start, int end, String replacement) {
+        edits.edit(start, end, replacement);
+        text.replace(start, end, replacement);
+    }
+
+    /**
+     * Apply the recorded edits to the original text.
+     */
+    static String apply(String original, List<EditList.Edit> edits) {
+        StringBuilder sb = new StringBuilder();
+        int pos = 0;
+        for (EditList.Edit e : edits) {
+            sb.append(original, pos, e.start).append(e.text);
+            pos = e.end;
+        }
+        return sb.append(original.substring(pos)).toString();
+    }
+}
@@ -0,0 +1,92 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class FacetFilterTest extends TestCase {
+
+    private final List<AddonEntry> entries = Arrays.asList(
+            entry("a", 4.5, "GPL-3.0"),
+            entry("b", 3, "LGPL 3.0"),
+            entry("c", 5, "AGPL-3.0"),
+            entry("d", 2, "Apache License 2.0"),
+            entry("e", 1, "Apache License 1.1", "GPL 2.0"),
+            entry("f", 0));
+
+    public void testExactLicense() {
+        assertEquals("a", names(new FacetFilter("GPL-3.0", 0)));
+        assertEquals("b", names(new FacetFilter("lgpl-3.0", 0)));
+        assertEquals("d", names(new FacetFilter("Apache-2.0", 0)));
+        assertEquals("", names(new FacetFilter("apache", 0)));
+    }
+
+    public void testLicensePrefix() {
+        assertEquals("de", names(new FacetFilter("apache*", 0)));
+        assertEquals("ae", names(new FacetFilter("GPL*", 0)));
+        assertEquals("", names(new FacetFilter("MIT*", 0)));
+    }
+
+    public void testRating() {
+        assertEquals("abc", names(new FacetFilter(null, 3)));
+        assertEquals("a", names(new FacetFilter("gpl-3.0", 3)));
+        assertEquals("", names(new FacetFilter("gpl-2.0", 3)));
+    }
+
+    public void testEmpty() {
+        assertTrue(new FacetFilter(null, 0).isEmpty());
+        assertTrue(new FacetFilter(" - ", 0).isEmpty());
+        assertSame(entries, new FacetFilter(null, 0).filter(entries));
+    }
+
+    public void testNormalizeLicense() {
+        assertEquals("apache20", FacetFilter.normalizeLicense("Apache License, Version 2.0"));
+        assertEquals("apache20", FacetFilter.normalizeLicense("apache-2.0"));
+        assertEquals("", FacetFilter.normalizeLicense(null));
+    }
+
+    public void testFacetsSelectLikeFilter() {
+        CatalogFacets facets = new CatalogFacets(entries);
+        for (FacetFilter filter : Arrays.asList(new FacetFilter("GPL-3.0", 0), new FacetFilter("gpl*", 2),
+                new FacetFilter("apache*", 0), new FacetFilter(null, 4))) {
+            BitSet selected = facets.select(filter);
+            for (int doc = 0; doc < entries.size(); doc++) {
+                assertEquals(filter.getLicense() + " " + doc, filter.matches(entries.get(doc)), selected.get(doc));
+            }
+        }
+        assertNull(facets.select(new FacetFilter(null, 0)));
+    }
+
+    private String names(FacetFilter filter) {
+        StringBuilder sb = new StringBuilder();
+        for (AddonEntry e : filter.filter(entries)) {
+            sb.append(e.getName());
+        }
+        return sb.toString();
+    }
+
+    static AddonEntry entry(String name, double rating, String... licenses) {
+        return new AddonEntry(name, name + " summary", Arrays.asList(licenses), rating, "org.vaadin.addons",
+                name, "1.0");
+    }
+}
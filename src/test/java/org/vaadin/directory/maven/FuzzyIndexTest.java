@@ -0,0 +1,144 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+import static org.vaadin.directory.maven.FacetFilterTest.entry;
+
+public class FuzzyIndexTest extends TestCase {
+
+    private static final String[] NAMES = {"GridUtil", "Grid Renderers Collection", "Vaadin Charts", "Maps",
+        "Leaflet", "LazyQueryContainer", "Tree Table Sorter", "Chart.js", "Popup Button", "Confirm Dialog",
+        "Grid Extension Pack", "Rich Text Toolbar", "Upload Field", "Viritin", "Spreadsheet Util"};
+
+    private final List<AddonEntry> entries = new ArrayList<>();
+    private FuzzyIndex index;
+
+    @Override
+    protected void setUp() {
+        for (String name : NAMES) {
+            entries.add(entry(name, 3));
+        }
+        index = new FuzzyIndex(entries);
+    }
+
+    public void testExact() {
+        assertEquals("GridUtil", index.search("gridutil", 1).get(0).getName());
+        assertEquals("Maps", index.search("maps", 1).get(0).getName());
+    }
+
+    public void testTypos() {
+        assertEquals("GridUtil", index.search("gridutl", 1).get(0).getName());
+        assertEquals("GridUtil", index.search("grdiutil", 1).get(0).getName());
+        assertEquals("Leaflet", index.search("laeflet", 1).get(0).getName());
+        assertEquals("LazyQueryContainer", index.search("lazy quyer container", 1).get(0).getName());
+    }
+
+    public void testClosestFirst() {
+        List<AddonEntry> hits = index.search("grid", 10);
+        assertEquals(3, hits.size());
+        // equally close, the name closest in length first
+        assertEquals("GridUtil", hits.get(0).getName());
+    }
+
+    public void testShortQueries() {
+        for (AddonEntry e : index.search("m", 20)) {
+            assertTrue(e.getName(), FuzzyIndex.normalize(e.getName()).contains("m"));
+        }
+        assertTrue(index.search("xq", 20).isEmpty());
+        // three letters allow no typo
+        assertTrue(index.search("mpa", 20).isEmpty());
+        assertEquals(1, index.search("map", 20).size());
+    }
+
+    public void testNoMatch() {
+        assertTrue(index.search("zzzzzzzz", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search("grid", 0).isEmpty());
+    }
+
+    public void testAllowed() {
+        BitSet allowed = new BitSet();
+        allowed.set(1);
+        List<AddonEntry> hits = index.search("grid", 10, allowed);
+        assertEquals(1, hits.size());
+        assertEquals("Grid Renderers Collection", hits.get(0).getName());
+    }
+
+    /**
+     * A query with one typo in part of a name always finds the name, so the
+     * candidate pruning never drops a match. Queries with fewer than three
+     * distinct bigrams allow no typo.
+     */
+    public void testOneTypoAlwaysFound() {
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            int doc = random.nextInt(NAMES.length);
+            String name = FuzzyIndex.normalize(NAMES[doc]);
+            int length = 4 + random.nextInt(Math.min(name.length(), 16) - 3);
+            int start = random.nextInt(name.length() - length + 1);
+            StringBuilder query = new StringBuilder(name.substring(start, start + length));
+            int at = random.nextInt(query.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    query.setCharAt(at, (char) ('a' + random.nextInt(26)));
+                    break;
+                case 1:
+                    query.deleteCharAt(at);
+                    break;
+                default:
+                    query.insert(at, (char) ('a' + random.nextInt(26)));
+                    break;
+            }
+            if (distinctBigrams(query) < 3) {
+                // too short or repetitive to allow a typo
+                continue;
+            }
+            assertTrue(query + " in " + name, index.search(query.toString(), NAMES.length)
+                    .contains(entries.get(doc)));
+        }
+    }
+
+    public void testRepetitiveQuery() {
+        assertEquals("Viritin", index.search("itin", 1).get(0).getName());
+        assertTrue(index.search("inin", 1).isEmpty());
+    }
+
+    private static int distinctBigrams(CharSequence s) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 2 <= s.length(); i++) {
+            grams.add(s.subSequence(i, i + 2).toString());
+        }
+        return grams.size();
+    }
+
+    public void testSubstringDistance() {
+        assertEquals(0, FuzzyIndex.substringDistance("util", "gridutil", 2));
+        assertEquals(1, FuzzyIndex.substringDistance("utl", "gridutil", 2));
+        assertEquals(3, FuzzyIndex.substringDistance("xyz", "gridutil", 2));
+    }
+}
@@ -0,0 +1,67 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+public class PomDiffTest extends TestCase {
+
+    private static final String POM = "a\nb\nc\nd\ne\nf\ng\nh\ni\nj\nk\nl\n";
+
+    public void testNoEdits() {
+        assertEquals("", new PomDiff(POM).render("pom.xml", "pom.xml"));
+    }
+
+    public void testEditThatChangesNothing() {
+        PomDiff diff = new PomDiff(POM);
+        diff.edit(2, 3, "b");
+        assertEquals("", diff.render("pom.xml", "pom.xml"));
+    }
+
+    public void testReplaceLine() {
+        PomDiff diff = new PomDiff(POM);
+        diff.edit(8, 9, "E");
+        assertEquals("--- pom.xml\n+++ pom.xml\n"
+                + "@@ -2,7 +2,7 @@\n b\n c\n d\n-e\n+E\n f\n g\n h\n", diff.render("pom.xml", "pom.xml"));
+    }
+
+    public void testInsertLines() {
+        PomDiff diff = new PomDiff(POM);
+        diff.edit(2, 2, "x\ny\n");
+        assertEquals("--- a\n+++ b\n"
+                + "@@ -1,4 +1,6 @@\n a\n+x\n+y\n b\n c\n d\n", diff.render("a", "b"));
+    }
+
+    public void testSeparateHunks() {
+        PomDiff diff = new PomDiff(POM);
+        diff.edit(0, 1, "A");
+        diff.edit(22, 23, "L");
+        assertEquals("--- pom.xml\n+++ pom.xml\n"
+                + "@@ -1,4 +1,4 @@\n-a\n+A\n b\n c\n d\n"
+                + "@@ -9,4 +9,4 @@\n i\n j\n k\n-l\n+L\n", diff.render("pom.xml", "pom.xml"));
+    }
+
+    public void testNoNewlineAtEnd() {
+        PomDiff diff = new PomDiff("a\nb");
+        diff.edit(2, 3, "c");
+        assertEquals("--- p\n+++ p\n"
+                + "@@ -1,2 +1,2 @@\n a\n-b\n\\ No newline at end of file\n+c\n\\ No newline at end of file\n",
+                diff.render("p", "p"));
+    }
+}
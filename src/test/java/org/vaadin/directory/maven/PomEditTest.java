@@ -0,0 +1,189 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import junit.framework.TestCase;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+
+public class PomEditTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pom-edit").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(dir);
+    }
+
+    public void testAddToExistingSections() throws Exception {
+        PomEdit edit = new PomEdit(pom("<project>\n"
+                + "    <artifactId>a</artifactId>\n"
+                + "    <properties>\n"
+                + "        <p>1</p>\n"
+                + "    </properties>\n"
+                + "    <dependencies>\n"
+                + "        <dependency><groupId>g</groupId><artifactId>x</artifactId></dependency>\n"
+                + "    </dependencies>\n"
+                + "</project>\n"));
+        edit.addProperty("q", "2");
+        edit.addDependency(dependency("g", "y", "1.0"));
+
+        assertEquals("<project>\n"
+                + "    <artifactId>a</artifactId>\n"
+                + "    <properties>\n"
+                + "        <p>1</p>\n"
+                + "        <q>2</q>\n"
+                + "    </properties>\n"
+                + "    <dependencies>\n"
+                + "        <dependency><groupId>g</groupId><artifactId>x</artifactId></dependency>\n"
+                + "        " + PomUtils.dependencyElement(dependency("g", "y", "1.0")) + "\n"
+                + "    </dependencies>\n"
+                + "</project>\n", commit(edit));
+    }
+
+    public void testCreateMissingSections() throws Exception {
+        PomEdit edit = new PomEdit(pom("<project>\n  <artifactId>a</artifactId>\n</project>\n"));
+        edit.addProperty("q", "2");
+        edit.addManagedDependency(dependency("g", "m", "1.0"));
+        edit.addDependency(dependency("g", "y", null));
+
+        Model model = parse(commit(edit));
+        assertEquals("2", model.getProperties().getProperty("q"));
+        assertEquals("m", model.getDependencyManagement().getDependencies().get(0).getArtifactId());
+        assertEquals("y", model.getDependencies().get(0).getArtifactId());
+    }
+
+    public void testExpandEmptySections() throws Exception {
+        PomEdit edit = new PomEdit(pom("<project><artifactId>a</artifactId><properties/>"
+                + "<dependencyManagement /><dependencies/></project>"));
+        edit.addProperty("q", "2");
+        edit.addManagedDependency(dependency("g", "m", "1.0"));
+        edit.addDependency(dependency("g", "y", "1.0"));
+
+        String result = commit(edit);
+        assertFalse(result, result.contains("/>"));
+        Model model = parse(result);
+        assertEquals("2", model.getProperties().getProperty("q"));
+        assertEquals(1, model.getDependencyManagement().getDependencies().size());
+        assertEquals("m", model.getDependencyManagement().getDependencies().get(0).getArtifactId());
+        assertEquals(1, model.getDependencies().size());
+        assertEquals("y", model.getDependencies().get(0).getArtifactId());
+    }
+
+    public void testExpandEmptySectionIndented() throws Exception {
+        PomEdit edit = new PomEdit(pom("<project>\n"
+                + "  <artifactId>a</artifactId>\n"
+                + "  <dependencies />\n"
+                + "</project>\n"));
+        edit.addDependency(dependency("g", "y", "1.0"));
+
+        assertEquals("<project>\n"
+                + "  <artifactId>a</artifactId>\n"
+                + "  <dependencies>\n"
+                + "    " + PomUtils.dependencyElement(dependency("g", "y", "1.0")) + "\n"
+                + "  </dependencies>\n"
+                + "</project>\n", commit(edit));
+    }
+
+    public void testKeepsLineSeparator() throws Exception {
+        PomEdit edit = new PomEdit(pom("<project>\r\n"
+                + "  <artifactId>a</artifactId>\r\n"
+                + "  <properties>\r\n"
+                + "  </properties>\r\n"
+                + "  <dependencies />\r\n"
+                + "</project>\r\n"));
+        edit.addProperty("q", "2");
+        edit.addDependency(dependency("g", "y", "1.0"));
+
+        assertEquals("<project>\r\n"
+                + "  <artifactId>a</artifactId>\r\n"
+                + "  <properties>\r\n"
+                + "    <q>2</q>\r\n"
+                + "  </properties>\r\n"
+                + "  <dependencies>\r\n"
+                + "    " + PomUtils.dependencyElement(dependency("g", "y", "1.0")) + "\r\n"
+                + "  </dependencies>\r\n"
+                + "</project>\r\n", commit(edit));
+    }
+
+    public void testPreviewDoesNotWrite() throws Exception {
+        String text = "<project>\n  <artifactId>a</artifactId>\n  <properties>\n  </properties>\n</project>\n";
+        File file = pom(text);
+        PomEdit edit = new PomEdit(file);
+        edit.addProperty("q", "2");
+
+        String diff = edit.preview(new Timings());
+        assertTrue(diff, diff.contains("+    <q>2</q>\n"));
+        assertFalse(diff, diff.contains("-  </properties>\n"));
+        assertEquals(text, read(file));
+    }
+
+    public void testCounters() throws Exception {
+        String text = "<project>\n  <artifactId>\u00e4</artifactId>\n</project>\n";
+        PomEdit edit = new PomEdit(pom(text));
+        edit.addProperty("q", "2");
+        Timings timings = new Timings();
+
+        edit.preview(timings);
+
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, timings.getCount(Timings.BYTES_READ));
+        assertEquals(1, timings.getCount(Timings.REWINDS));
+    }
+
+    private File pom(String text) throws IOException {
+        File file = new File(dir, "pom.xml");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String commit(PomEdit edit) throws IOException {
+        PomTransaction transaction = new PomTransaction(new File(dir, "journal"));
+        edit.stage(transaction, new Timings());
+        assertTrue(transaction.commit(1));
+        return read(edit.getFile());
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static Model parse(String pom) throws Exception {
+        return new MavenXpp3Reader().read(new StringReader(pom));
+    }
+
+    static Dependency dependency(String groupId, String artifactId, String version) {
+        Dependency d = new Dependency();
+        d.setGroupId(groupId);
+        d.setArtifactId(artifactId);
+        d.setVersion(version);
+        return d;
+    }
+}
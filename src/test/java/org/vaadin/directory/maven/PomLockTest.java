@@ -0,0 +1,108 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import junit.framework.TestCase;
+
+public class PomLockTest extends TestCase {
+
+    private File dir;
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pom-lock").toFile();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        TestFiles.delete(dir);
+    }
+
+    public void testLockFileInTarget() throws Exception {
+        File pom = new File(dir, "pom.xml");
+        PomLock lock = PomLock.lock(pom);
+        try {
+            assertTrue(new File(dir, "target/pom.xml.lock").isFile());
+            assertFalse(new File(dir, "pom.xml.lock").exists());
+        } finally {
+            lock.close();
+        }
+    }
+
+    public void testReentrant() throws Exception {
+        final File pom = new File(dir, "pom.xml");
+        PomLock outer = PomLock.lock(pom);
+        try {
+            PomLock inner = PomLock.lock(pom);
+            inner.close();
+            // closing the inner lock keeps the pom locked
+            assertFalse(tryLockFromOtherThread(pom));
+        } finally {
+            outer.close();
+        }
+        assertTrue(tryLockFromOtherThread(pom));
+    }
+
+    public void testCloseTwice() throws Exception {
+        File pom = new File(dir, "pom.xml");
+        PomLock outer = PomLock.lock(pom);
+        PomLock inner = PomLock.lock(pom);
+        inner.close();
+        inner.close();
+        assertFalse(tryLockFromOtherThread(pom));
+        outer.close();
+        assertTrue(tryLockFromOtherThread(pom));
+    }
+
+    private boolean tryLockFromOtherThread(final File pom) throws Exception {
+        Future<Void> other = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                PomLock.lock(pom).close();
+                return null;
+            }
+        });
+        try {
+            other.get(500, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            other.cancel(true);
+            // wait for the interrupted attempt to give up
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            }).get();
+            return false;
+        }
+    }
+}
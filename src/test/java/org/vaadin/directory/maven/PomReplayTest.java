@@ -0,0 +1,239 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Collections;
+import java.util.Random;
+import javax.xml.stream.events.XMLEvent;
+import junit.framework.TestCase;
+import org.apache.maven.model.Dependency;
+import org.codehaus.mojo.versions.api.PomHelper;
+import org.codehaus.mojo.versions.rewriting.ModifiedPomXMLEventReader;
+
+/**
+ * Differential test of the event tape: the same random edits and scans are
+ * made with one reader, which replays its tape on rewind, and with a fresh
+ * reader parsing the text before every operation. Both must give the same
+ * events, results and text.
+ */
+public class PomReplayTest extends TestCase {
+
+    private static final int CASES = 300;
+
+    private static final int OPERATIONS = 12;
+
+    public void testReplayMatchesReparse() throws Exception {
+        for (int c = 0; c < CASES; c++) {
+            String text = pom(new Random(c));
+            ModifiedPomXMLEventReader replaying = PomUtils.newModifiedPomXER(new StringBuilder(text));
+            String reparsed = text;
+            for (int op = 0; op < OPERATIONS; op++) {
+                long seed = c * 1000L + op;
+                ModifiedPomXMLEventReader fresh = PomUtils.newModifiedPomXER(new StringBuilder(reparsed));
+                String expected = operate(fresh, new Random(seed));
+                String actual = operate(replaying, new Random(seed));
+                String context = "case " + c + ", operation " + op;
+                assertEquals(context, expected, actual);
+                reparsed = fresh.asStringBuilder().toString();
+                assertEquals(context, reparsed, replaying.asStringBuilder().toString());
+            }
+        }
+    }
+
+    /**
+     * Make one random edit or scan.
+     *
+     * @return A description of what the operation saw.
+     */
+    private static String operate(ModifiedPomXMLEventReader pom, Random r) {
+        StringBuilder out = new StringBuilder();
+        int k = r.nextInt(9);
+        out.append(k).append(':');
+        try {
+            switch (k) {
+                case 0:
+                    out.append(PomHelper.setPropertyVersion(pom, r.nextBoolean() ? null : "x", "p" + r.nextInt(3),
+                            newVersion(r)));
+                    break;
+                case 1:
+                    out.append(PomHelper.setProjectVersion(pom, newVersion(r)));
+                    break;
+                case 2:
+                    out.append(PomHelper.getProjectVersion(pom));
+                    break;
+                case 3:
+                    out.append(PomHelper.setProjectParentVersion(pom, newVersion(r)));
+                    break;
+                case 4:
+                    out.append(PomHelper.setDependencyVersion(pom, "g" + r.nextInt(2), "a" + r.nextInt(5),
+                            r.nextBoolean() ? null : "1.0", newVersion(r)));
+                    break;
+                case 5:
+                    out.append(PomHelper.setPluginVersion(pom, "g0", "pl", null, newVersion(r)));
+                    break;
+                case 6:
+                    Dependency dep = PomEditTest.dependency("n", "n" + r.nextInt(100), r.nextBoolean() ? null : "1");
+                    PomUtils.addNewDependencies(pom, Collections.singletonList(dep), new Timings());
+                    break;
+                case 7:
+                    scan(pom, r, out);
+                    break;
+                default:
+                    editPartially(pom, r);
+                    break;
+            }
+        } catch (Exception ex) {
+            out.append(ex.getClass().getSimpleName());
+        }
+        return out.toString();
+    }
+
+    /**
+     * Read every event, with its verbatim text, some element texts and
+     * marks.
+     */
+    private static void scan(ModifiedPomXMLEventReader pom, Random r, StringBuilder out) throws Exception {
+        pom.rewind();
+        int marks = 0;
+        while (pom.hasNext()) {
+            out.append('[').append(pom.getPeekVerbatim()).append(']');
+            XMLEvent event = pom.nextEvent();
+            out.append(event.getEventType()).append(':').append(pom.getVerbatim()).append('|');
+            if (event.isCharacters()) {
+                out.append('{').append(event.asCharacters().getData()).append(',')
+                        .append(event.asCharacters().isWhiteSpace()).append('}');
+            }
+            if (event.isStartElement() && r.nextInt(4) == 0) {
+                out.append("text(").append(pom.getElementText()).append(')');
+            }
+            if (r.nextInt(6) == 0) {
+                pom.mark(marks++ % 3);
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            out.append(" mark").append(i).append('=').append(pom.getMarkVerbatim(i));
+        }
+    }
+
+    /**
+     * Replace some characters events in a scan cut short.
+     */
+    private static void editPartially(ModifiedPomXMLEventReader pom, Random r) throws Exception {
+        pom.rewind();
+        int stop = r.nextInt(30);
+        while (pom.hasNext() && stop-- > 0) {
+            XMLEvent event = pom.nextEvent();
+            if (event.isCharacters() && r.nextInt(3) == 0 && !pom.getVerbatim().isEmpty()) {
+                pom.replace(r.nextBoolean() ? newVersion(r) : "<x/>");
+            }
+        }
+    }
+
+    private static String newVersion(Random r) {
+        switch (r.nextInt(10)) {
+            case 0:
+                return "";
+            case 1:
+                return " ";
+            case 2:
+                return "9.9.9-SNAPSHOT-LONGER";
+            case 3:
+                return "a\r\nb";
+            default:
+                return String.valueOf(r.nextInt(100));
+        }
+    }
+
+    private static String value(Random r) {
+        switch (r.nextInt(8)) {
+            case 0:
+                return "";
+            case 1:
+                return "1.0&amp;x";
+            case 2:
+                return "<![CDATA[2.0]]>";
+            case 3:
+                return " 3.0 ";
+            case 4:
+                return "<!-- c -->4.0";
+            default:
+                return r.nextInt(5) + "." + r.nextInt(10);
+        }
+    }
+
+    private static String nl(Random r) {
+        return r.nextInt(4) == 0 ? "\r\n" : "\n";
+    }
+
+    /**
+     * A random pom with the elements the edits look for.
+     */
+    private static String pom(Random r) {
+        StringBuilder b = new StringBuilder("<?xml version=\"1.0\"?>").append(nl(r)).append("<project>").append(nl(r));
+        if (r.nextBoolean()) {
+            b.append("  <parent><groupId>p</groupId><artifactId>pa</artifactId><version>").append(value(r))
+                    .append("</version></parent>").append(nl(r));
+        }
+        b.append("  <groupId>g</groupId>").append(nl(r)).append("  <artifactId>a</artifactId>").append(nl(r));
+        if (r.nextBoolean()) {
+            b.append("  <version>").append(value(r)).append("</version>").append(nl(r));
+        }
+        if (r.nextBoolean()) {
+            b.append("  <properties>").append(nl(r));
+            for (int i = 0; i < r.nextInt(4); i++) {
+                b.append("    <p").append(i).append('>').append(value(r)).append("</p").append(i).append('>')
+                        .append(nl(r));
+            }
+            if (r.nextBoolean()) {
+                b.append("    <e/>").append(nl(r));
+            }
+            b.append("  </properties>").append(nl(r));
+        }
+        if (r.nextInt(3) > 0) {
+            b.append("  <dependencies>").append(nl(r));
+            for (int i = 0; i < r.nextInt(5); i++) {
+                b.append("    <dependency>").append(nl(r))
+                        .append("      <groupId>g").append(r.nextInt(2)).append("</groupId>").append(nl(r))
+                        .append("      <artifactId>a").append(i).append("</artifactId>").append(nl(r));
+                int v = r.nextInt(3);
+                if (v == 0) {
+                    b.append("      <version>").append(value(r)).append("</version>").append(nl(r));
+                } else if (v == 1) {
+                    b.append("      <version>${p").append(r.nextInt(3)).append("}</version>").append(nl(r));
+                }
+                b.append("    </dependency>").append(nl(r));
+            }
+            b.append("  </dependencies>").append(nl(r));
+        }
+        if (r.nextBoolean()) {
+            b.append("  <build><plugins><plugin><groupId>g0</groupId><artifactId>pl</artifactId><version>")
+                    .append(value(r)).append("</version></plugin></plugins></build>").append(nl(r));
+        }
+        if (r.nextBoolean()) {
+            b.append("  <profiles><profile><id>x</id><properties><p0>").append(value(r))
+                    .append("</p0></properties></profile></profiles>").append(nl(r));
+        }
+        b.append("</project>");
+        if (r.nextBoolean()) {
+            b.append(nl(r));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import junit.framework.TestCase;
+
+public class PomTransactionTest extends TestCase {
+
+    private File dir;
+    private File journal;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pom-transaction").toFile();
+        journal = new File(dir, "journal");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(dir);
+    }
+
+    public void testCommit() throws Exception {
+        File a = file("a.xml", "a");
+        File b = new File(dir, "b.xml");
+        PomTransaction tx = new PomTransaction(journal);
+        tx.stage(a, bytes("a2"));
+        tx.stage(b, bytes("b2"));
+        assertEquals(2, tx.getStagedFiles().size());
+        assertTrue(tx.commit(2));
+        assertEquals("a2", text(a));
+        assertEquals("b2", text(b));
+        assertFalse(journal.exists());
+    }
+
+    public void testUnchangedIsNotStaged() throws Exception {
+        File a = file("a.xml", "a");
+        PomTransaction tx = new PomTransaction(journal);
+        tx.stage(a, bytes("a"));
+        assertTrue(tx.getStagedFiles().isEmpty());
+    }
+
+    public void testChangedOriginal() throws Exception {
+        File a = file("a.xml", "a");
+        File b = file("b.xml", "b");
+        PomTransaction tx = new PomTransaction(journal);
+        tx.stage(PomFile.read(a), bytes("a2"));
+        tx.stage(b, bytes("b2"));
+        file("a.xml", "someone else");
+        assertFalse(tx.commit(1));
+        assertEquals("someone else", text(a));
+        assertEquals("b", text(b));
+        assertTrue(tx.getStagedFiles().isEmpty());
+    }
+
+    public void testRollbackOnFailedWrite() throws Exception {
+        File a = file("a.xml", "a");
+        File c = new File(dir, "c.xml");
+        // a directory cannot be replaced with a file
+        File blocked = new File(dir, "blocked.xml");
+        assertTrue(new File(blocked, "child").mkdirs());
+        PomTransaction tx = new PomTransaction(journal);
+        tx.stage(a, bytes("a2"));
+        tx.stage(c, bytes("c2"));
+        tx.stage(blocked, bytes("x"));
+        try {
+            tx.commit(1);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals("a", text(a));
+        assertFalse(c.exists());
+        assertTrue(blocked.isDirectory());
+        assertFalse(journal.exists());
+    }
+
+    public void testRecoverInterrupted() throws Exception {
+        File a = file("a.xml", "a2");
+        File b = file("b.xml", "b2");
+        // the journal of a commit that died after writing both files, b
+        // being new
+        assertTrue(journal.mkdirs());
+        file("journal/0.bak", "a");
+        file("journal/manifest", "0.bak\t" + a.getPath() + "\n-\t" + b.getPath() + "\n");
+        List<File> restored = PomTransaction.recover(journal);
+        assertEquals(2, restored.size());
+        assertEquals("a", text(a));
+        assertFalse(b.exists());
+        assertFalse(journal.exists());
+    }
+
+    public void testRecoverWithoutJournal() throws Exception {
+        assertTrue(PomTransaction.recover(journal).isEmpty());
+    }
+
+    private File file(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), bytes(content));
+        return file;
+    }
+
+    private static String text(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
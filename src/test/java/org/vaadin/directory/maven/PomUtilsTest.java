@@ -0,0 +1,134 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import static org.vaadin.directory.maven.PomEditTest.dependency;
+
+public class PomUtilsTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pom-utils").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(dir);
+    }
+
+    public void testAddDependencies() throws Exception {
+        Model model = model("<project>\n  <artifactId>a</artifactId>\n  <dependencies>\n"
+                + "    <dependency><groupId>g</groupId><artifactId>x</artifactId></dependency>\n"
+                + "  </dependencies>\n</project>\n");
+
+        assertSame(model, PomUtils.addDependencies(model,
+                Arrays.asList(dependency("g", "x", "1.0"), dependency("g", "y", "1.0")), new Timings()));
+
+        Model written = read(model.getPomFile());
+        assertEquals(2, written.getDependencies().size());
+        assertEquals("y", written.getDependencies().get(1).getArtifactId());
+        assertEquals(2, model.getDependencies().size());
+    }
+
+    public void testAddDependenciesWithoutSection() throws Exception {
+        Model model = model("<project>\n  <artifactId>a</artifactId>\n</project>\n");
+
+        PomUtils.addDependencies(model, Arrays.asList(dependency("g", "y", "1.0")), new Timings());
+
+        Model written = read(model.getPomFile());
+        assertEquals(1, written.getDependencies().size());
+        assertEquals("y", written.getDependencies().get(0).getArtifactId());
+    }
+
+    public void testAddDependenciesToEmptySection() throws Exception {
+        Model model = model("<project><artifactId>a</artifactId><dependencies/></project>");
+
+        PomUtils.addDependencies(model, Arrays.asList(dependency("g", "y", null)), new Timings());
+
+        Model written = read(model.getPomFile());
+        assertEquals(1, written.getDependencies().size());
+        assertNull(written.getDependencies().get(0).getVersion());
+    }
+
+    public void testAddPresentDependencies() throws Exception {
+        Model model = model("<project><artifactId>a</artifactId><dependencies>"
+                + "<dependency><groupId>g</groupId><artifactId>x</artifactId></dependency>"
+                + "</dependencies></project>");
+
+        assertNull(PomUtils.addDependencies(model, Arrays.asList(dependency("g", "x", "1.0")), new Timings()));
+    }
+
+    public void testAddDependenciesFailure() throws Exception {
+        Model model = model("<project><artifactId>a</artifactId><dependencies/></project>");
+        Files.delete(model.getPomFile().toPath());
+
+        try {
+            PomUtils.addDependencies(model, Arrays.asList(dependency("g", "y", "1.0")), new Timings());
+            fail();
+        } catch (MojoExecutionException ex) {
+            // the model is left as it was
+            assertTrue(model.getDependencies().isEmpty());
+        }
+    }
+
+    public void testPreviewDependencies() throws Exception {
+        String text = "<project>\n  <artifactId>a</artifactId>\n</project>\n";
+        Model model = model(text);
+
+        String diff = PomUtils.previewDependencies(model, Arrays.asList(dependency("g", "y", "1.0")),
+                new Timings());
+
+        assertTrue(diff, diff.contains("+  <dependencies>\n"));
+        assertEquals(text, new String(Files.readAllBytes(model.getPomFile().toPath()), StandardCharsets.UTF_8));
+        assertTrue(model.getDependencies().isEmpty());
+    }
+
+    public void testMajorVersion() {
+        assertEquals("7", PomUtils.majorVersion("7.7.3"));
+        assertEquals("8", PomUtils.majorVersion("[8.0,9)"));
+        assertNull(PomUtils.majorVersion("${vaadin.version}"));
+        assertNull(PomUtils.majorVersion(null));
+    }
+
+    private Model model(String text) throws Exception {
+        File file = new File(dir, "pom.xml");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        Model model = read(file);
+        model.setPomFile(file);
+        return model;
+    }
+
+    private static Model read(File file) throws Exception {
+        return new MavenXpp3Reader().read(new StringReader(
+                new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)));
+    }
+}
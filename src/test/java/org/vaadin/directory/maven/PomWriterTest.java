@@ -0,0 +1,83 @@
+package org.vaadin.directory.maven;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import junit.framework.TestCase;
+
+public class PomWriterTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pom-writer").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestFiles.delete(dir);
+    }
+
+    public void testWrite() throws Exception {
+        File file = new File(dir, "pom.xml");
+        assertTrue(PomWriter.write(file, bytes("a")));
+        assertTrue(PomWriter.write(file, bytes("b")));
+        assertEquals("b", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        // only the pom is left behind
+        assertEquals(1, dir.list().length);
+    }
+
+    public void testSkipUnchanged() throws Exception {
+        File file = new File(dir, "pom.xml");
+        PomWriter.write(file, bytes("a"));
+        assertTrue(file.setLastModified(1000));
+        assertFalse(PomWriter.write(file, bytes("a")));
+        assertEquals(1000, file.lastModified());
+    }
+
+    public void testTempFilesAreDistinct() throws Exception {
+        File file = new File(dir, "pom.xml");
+        Path a = PomWriter.tempFile(file);
+        Path b = PomWriter.tempFile(file);
+        assertFalse(a.equals(b));
+        assertEquals(dir.toPath().toAbsolutePath(), a.getParent());
+    }
+
+    public void testKeepPermissions() throws Exception {
+        File file = new File(dir, "pom.xml");
+        PomWriter.write(file, bytes("a"));
+        if (!Files.getFileStore(file.toPath()).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return;
+        }
+        Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-rw-r--"));
+        PomWriter.write(file, bytes("b"));
+        assertEquals("rw-rw-r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}